@@ -0,0 +1,33 @@
+plugins {
+    kotlin("jvm")
+    alias(libs.plugins.jmh)
+}
+
+dependencies {
+    implementation(kotlin("stdlib"))
+    jmhImplementation(project(":common"))
+    jmhImplementation(project(":nodes"))
+    jmhImplementation(project(":parser"))
+    jmhImplementation(project(":semantics"))
+    jmhImplementation(project(":module"))
+    jmhImplementation(project(":ir"))
+    jmhImplementation(project(":compiler"))
+    jmhImplementation(project(":kore"))
+    jmhImplementation(libs.graalvm.truffle.api)
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+    profilers.add("gc")
+    jvmArgsAppend.addAll(
+        "--add-exports", "org.graalvm.truffle/com.oracle.truffle.api=ALL-UNNAMED",
+        "--add-exports", "org.graalvm.truffle/com.oracle.truffle.api.nodes=ALL-UNNAMED",
+        "--add-exports", "org.graalvm.truffle/com.oracle.truffle.api.strings=ALL-UNNAMED",
+        "--add-exports", "org.graalvm.truffle/com.oracle.truffle.api.staticobject=ALL-UNNAMED",
+        "--add-exports", "org.graalvm.truffle/com.oracle.truffle.api.dsl=ALL-UNNAMED",
+        "--add-exports", "org.graalvm.truffle/com.oracle.truffle.api.frame=ALL-UNNAMED",
+        "--add-exports", "org.graalvm.truffle/com.oracle.truffle.api.interop=ALL-UNNAMED"
+    )
+}
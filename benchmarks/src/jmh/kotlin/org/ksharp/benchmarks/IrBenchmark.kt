@@ -0,0 +1,55 @@
+package org.ksharp.benchmarks
+
+import org.ksharp.ir.IrFunction
+import org.openjdk.jmh.annotations.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * Steady state throughput of the truffle IR interpreter.
+ * Run with `gradle :benchmarks:jmh`, results are written as json to build/results/jmh
+ * and include the allocation rate reported by the gc profiler
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class IrBenchmark {
+
+    private lateinit var fib: IrFunction
+    private lateinit var sumTo: IrFunction
+    private lateinit var closures: IrFunction
+    private lateinit var megamorphic: IrFunction
+    private lateinit var collections: IrFunction
+    private lateinit var strings: IrFunction
+
+    @Setup
+    fun setup() {
+        val module = programs.compileModule("bench")
+        fib = module.function("fib/1")
+        sumTo = module.function("sumTo/2")
+        closures = module.function("closures/1")
+        megamorphic = module.function("megamorphic/1")
+        collections = module.function("collections/1")
+        strings = module.function("strings/1")
+    }
+
+    @Benchmark
+    fun recursiveFib(): Any = fib.call(20L)
+
+    @Benchmark
+    fun accumulatorLoop(): Any = sumTo.call(0L, 1000L)
+
+    @Benchmark
+    fun closuresDirectDispatch(): Any = closures.call(10L)
+
+    @Benchmark
+    fun closuresIndirectDispatch(): Any = megamorphic.call(10L)
+
+    @Benchmark
+    fun collectionNodes(): Any = collections.call(10L)
+
+    @Benchmark
+    fun stringNatives(): Any = strings.call(123456L)
+}
@@ -0,0 +1,89 @@
+package org.ksharp.benchmarks
+
+import org.ksharp.ir.IrModule
+import org.ksharp.ir.serializer.writeTo
+import org.ksharp.ir.toIrModule
+import org.ksharp.module.CodeModule
+import org.ksharp.module.bytecode.writeTo
+import org.ksharp.module.prelude.preludeModule
+import org.ksharp.nodes.ModuleNode
+import org.ksharp.parser.ksharp.lexerModule
+import org.ksharp.parser.ksharp.parseModule
+import org.ksharp.semantics.nodes.toCodeModule
+import org.openjdk.jmh.annotations.*
+import java.io.ByteArrayOutputStream
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.TimeUnit
+
+/**
+ * One benchmark per stage of ModuleLoader.codeModule, over synthetic modules of growing size.
+ * Each stage receives the output of the previous stage, computed once in the setup.
+ *
+ * Throughput and sample time (with the p0.99 percentile) are reported per stage,
+ * the gc profiler reports the allocated bytes per operation (gc.alloc.rate.norm)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput, Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+open class PipelineBenchmark {
+
+    @Param("Flat", "Nested", "Traits")
+    lateinit var shape: ModuleShape
+
+    @Param("100", "1000", "10000")
+    var functions: Int = 0
+
+    private lateinit var source: String
+    private lateinit var moduleNode: ModuleNode
+    private lateinit var codeModule: CodeModule
+    private lateinit var irModule: IrModule
+
+    @Setup(Level.Trial)
+    fun setup() {
+        source = syntheticModule(shape, functions)
+        moduleNode = parse()
+        codeModule = semantics()
+        irModule = ir()
+    }
+
+    @Benchmark
+    fun lex(): Int {
+        val lexer = source.lexerModule(true)
+        var tokens = 0
+        while (lexer.hasNext()) {
+            lexer.next()
+            tokens += 1
+        }
+        return tokens
+    }
+
+    @Benchmark
+    fun parse(): ModuleNode =
+        source.parseModule("bench", true)
+            .valueOrNull!!
+
+    @Benchmark
+    fun parallelParse(): ModuleNode =
+        source.parseModule("bench", true, ForkJoinPool.commonPool())
+            .valueOrNull!!
+
+    @Benchmark
+    fun semantics(): CodeModule =
+        moduleNode.toCodeModule(preludeModule) { _, _ -> null }
+
+    @Benchmark
+    fun ir(): IrModule =
+        codeModule.toIrModule { null }
+
+    @Benchmark
+    fun serialize(): Int {
+        val moduleInfo = ByteArrayOutputStream()
+        codeModule.module.writeTo(moduleInfo)
+        val code = ByteArrayOutputStream()
+        irModule.writeTo(code)
+        return moduleInfo.size() + code.size()
+    }
+}
@@ -0,0 +1,71 @@
+package org.ksharp.benchmarks
+
+import org.ksharp.common.cast
+import org.ksharp.compiler.loader.Module
+import org.ksharp.compiler.loader.ModuleLoader
+import org.ksharp.compiler.loader.SourceLoader
+import org.ksharp.ir.IrFunction
+import org.ksharp.ir.symbol
+import org.ksharp.kore.withKoreLibrary
+import org.ksharp.module.prelude.preludeModule
+import java.io.*
+
+/**
+ * Representative programs used by the interpreter benchmarks
+ */
+val programs = """
+    |import strings as s
+    |
+    |fib :: Long -> Long
+    |fib n = if n < 2 then n else (fib (n - 1)) + (fib (n - 2))
+    |
+    |sumTo :: Long -> Long -> Long
+    |sumTo acc n = if n == 0 then acc else sumTo (acc + n) (n - 1)
+    |
+    |apply f x = f x
+    |adder b = \a -> a + b
+    |multiply b = \a -> a * b
+    |subtract b = \a -> a - b
+    |
+    |closures :: Long -> Long
+    |closures n = (apply (adder n) 1) + (apply (adder n) 2)
+    |
+    |megamorphic :: Long -> Long
+    |megamorphic n = (apply (adder n) 1) + (apply (multiply n) 2) + (apply (subtract n) 3)
+    |
+    |collections :: Long -> (List Long)
+    |collections n = [n, n + 1, n + 2, n + 3]
+    |
+    |strings :: Long -> Int
+    |strings n = s.length (s.trim (s.uppercase (str n)))
+""".trimMargin()
+
+/**
+ * Sources for a single in memory module, the dependencies are loaded from the classpath
+ */
+fun inMemorySources(moduleName: String, code: String): SourceLoader {
+    val binaries = mutableMapOf<String, ByteArray>()
+    return object : SourceLoader {
+        override fun binaryLoad(path: String): InputStream? =
+            binaries[path]?.let { ByteArrayInputStream(it) }
+                ?: if (path.startsWith("$moduleName.")) null
+                else javaClass.getResourceAsStream("/$path")
+
+        override fun sourceLoad(path: String): Reader? =
+            if (path == "$moduleName.ks") code.reader()
+            else null
+
+        override fun outputStream(path: String, action: (OutputStream) -> Unit) {
+            binaries[path] = ByteArrayOutputStream().also(action).toByteArray()
+        }
+    }
+}
+
+fun String.compileModule(moduleName: String): Module =
+    ModuleLoader(inMemorySources(moduleName, this).withKoreLibrary(), preludeModule)
+        .load(moduleName, "")
+        .mapLeft { error("$moduleName doesn't compile: $it") }
+        .valueOrNull!!
+
+fun Module.function(name: String): IrFunction =
+    irModule.symbols.symbol(name).cast()
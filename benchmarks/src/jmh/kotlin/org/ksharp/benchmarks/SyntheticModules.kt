@@ -0,0 +1,52 @@
+package org.ksharp.benchmarks
+
+enum class ModuleShape {
+    Flat,
+    Nested,
+    Traits
+}
+
+private fun StringBuilder.flatFunction(index: Int) {
+    appendLine("f$index a b = a + b * $index")
+    appendLine()
+}
+
+private fun nestedExpression(variable: String, depth: Int): String =
+    if (depth == 0) variable
+    else nestedExpression(variable, depth - 1).let {
+        "if $variable > $depth then ($it) + $depth else ($it) - $depth"
+    }
+
+private fun StringBuilder.nestedFunction(index: Int) {
+    val declaration = "n$index a = let "
+    val indent = " ".repeat(declaration.length)
+    appendLine("${declaration}x = a + $index")
+    appendLine("${indent}y = x * 2")
+    appendLine("${" ".repeat(declaration.length - 4)}then ${nestedExpression("y", 4)}")
+    appendLine()
+}
+
+private fun StringBuilder.traitWithImpl(index: Int) {
+    appendLine("trait Measure$index a =")
+    appendLine("    measure$index :: a -> a")
+    appendLine()
+    appendLine("impl Measure$index for Long =")
+    appendLine("    measure$index a = a * $index")
+    appendLine()
+    appendLine("m$index a = measure$index (a + $index)")
+    appendLine()
+}
+
+/**
+ * Generates a module with the given number of top level functions
+ */
+fun syntheticModule(shape: ModuleShape, functions: Int): String =
+    buildString {
+        repeat(functions) {
+            when (shape) {
+                ModuleShape.Flat -> flatFunction(it)
+                ModuleShape.Nested -> nestedFunction(it)
+                ModuleShape.Traits -> if (it % 10 == 0) traitWithImpl(it) else flatFunction(it)
+            }
+        }
+    }
@@ -6,4 +6,64 @@ class Cache<K, V> {
         cache[key] ?: create().also { cache[key] = it }
 }
 
-fun <K, V> cacheOf() = Cache<K, V>()
\ No newline at end of file
+fun <K, V> cacheOf() = Cache<K, V>()
+
+/**
+ * Thread safe least recently used cache, entries are evicted when the total weight exceeds maxWeight
+ */
+class LruCache<K, V : Any>(
+    private val maxWeight: Long,
+    private val weigher: (K, V) -> Long = { _, _ -> 1 }
+) {
+    private val entries = LinkedHashMap<K, V>(16, 0.75f, true)
+    private var weight = 0L
+
+    var hits = 0L
+        @Synchronized get
+        private set
+    var misses = 0L
+        @Synchronized get
+        private set
+    var evictions = 0L
+        @Synchronized get
+        private set
+
+    val size: Int
+        @Synchronized get() = entries.size
+
+    @Synchronized
+    operator fun get(key: K): V? =
+        entries[key].also {
+            if (it == null) misses++
+            else hits++
+        }
+
+    @Synchronized
+    fun put(key: K, value: V) {
+        entries.put(key, value)?.let { weight -= weigher(key, it) }
+        weight += weigher(key, value)
+        val iterator = entries.entries.iterator()
+        while (weight > maxWeight && iterator.hasNext()) {
+            val entry = iterator.next()
+            if (entry.key == key) continue
+            iterator.remove()
+            weight -= weigher(entry.key, entry.value)
+            evictions++
+        }
+    }
+
+    @Synchronized
+    fun remove(key: K) {
+        entries.remove(key)?.let { weight -= weigher(key, it) }
+    }
+
+    /**
+     * The value is created outside the lock, so two threads can create the same entry,
+     * null values are not cached
+     */
+    fun get(key: K, create: () -> V?): V? =
+        get(key) ?: create()?.also { put(key, it) }
+}
+
+fun <K, V : Any> lruCacheOf(maxWeight: Long, weigher: (K, V) -> Long = { _, _ -> 1 }) =
+    LruCache(maxWeight, weigher)
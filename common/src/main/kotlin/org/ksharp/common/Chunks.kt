@@ -0,0 +1,23 @@
+package org.ksharp.common
+
+import java.util.concurrent.Callable
+import java.util.concurrent.ForkJoinPool
+
+/**
+ * Number of entries decoded by a task when a binary is decoded in parallel
+ */
+const val DecodeChunkSize = 64
+
+/**
+ * Transform the indexes in chunks on the pool, the result keeps the order of the indexes
+ */
+fun <T> ForkJoinPool.mapChunks(
+    size: Int,
+    chunkSize: Int = DecodeChunkSize,
+    transform: (index: Int) -> T
+): List<T> =
+    (0 until size step chunkSize).map { start ->
+        submit(Callable {
+            (start until minOf(start + chunkSize, size)).map(transform)
+        })
+    }.flatMap { it.join() }
@@ -18,3 +18,13 @@ data class Location(
         val NoProvided = Location(ZeroPosition, ZeroPosition)
     }
 }
+
+/**
+ * Location moved [delta] lines, [Location.NoProvided] is not moved
+ */
+fun Location.shiftLines(delta: Int): Location =
+    if (delta == 0 || this == Location.NoProvided) this
+    else Location(
+        Line(start.first.value + delta) to start.second,
+        Line(end.first.value + delta) to end.second
+    )
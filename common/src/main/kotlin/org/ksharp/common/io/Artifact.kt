@@ -0,0 +1,171 @@
+package org.ksharp.common.io
+
+import java.io.OutputStream
+import java.nio.channels.Channels
+import java.nio.channels.SeekableByteChannel
+import java.nio.channels.WritableByteChannel
+import java.util.zip.CRC32C
+
+/**
+ * Version of the binary layout, it must change when the serializers change
+ * (e.g. the order of an enum used to encode the nodes)
+ */
+const val ArtifactFormatVersion = 3
+
+/**
+ * Version of the compiler that wrote the artifact, artifacts written by another compiler are compiled again
+ */
+const val CompilerVersion = 1
+
+private const val PreambleSize = 24
+private const val SectionEntrySize = 8
+
+/**
+ * Kind of compiled artifact, the magic number is the first int of the file
+ */
+enum class ArtifactKind(val magic: Int) {
+    Module(0x4B534D00), // KSM
+    Code(0x4B534300), // KSC
+    Doc(0x4B534400), // KSD
+    Bundle(0x4B534100), // KSA
+    Locations(0x4B534C00) // KSL
+}
+
+/**
+ * Layout:
+ *
+ * magic | format version | compiler version | encoding | sections | table offset
+ *
+ * the sections, followed by the table with the (size | crc32c) of each section.
+ *
+ * Each section is encoded in memory, the encoders back-patch sizes and offsets inside the section,
+ * and then written with a gathering write. On seekable channels (e.g. files) the section is written
+ * as soon as it is added and the preamble is back-patched at the end, so only one section is kept in memory.
+ * On other channels all the sections are kept until the artifact is finished
+ */
+class ArtifactWriter(
+    private val kind: ArtifactKind,
+    private val channel: WritableByteChannel,
+    private val encoding: Encoding = Encoding.Fixed
+) {
+    private val seekable = channel as? SeekableByteChannel
+    private val start = seekable?.position() ?: 0L
+    private val pending = mutableListOf<TransferableBufferWriter>()
+    private val table = newBufferWriter()
+    private var sectionsCount = 0
+    private var sectionsSize = 0
+
+    init {
+        if (seekable != null) channel.transfer(listOf(preamble()))
+    }
+
+    private fun preamble() = newBufferWriter().apply {
+        add(kind.magic)
+        add(ArtifactFormatVersion)
+        add(CompilerVersion)
+        add(encoding.ordinal)
+        add(sectionsCount)
+        add(PreambleSize + sectionsSize)
+    }
+
+    /**
+     * Adds a section with the content of the buffers, once added the buffers are destroyed
+     */
+    fun section(vararg buffers: TransferableBufferWriter) {
+        val checksum = CRC32C()
+        val size = buffers.sumOf {
+            checksum.update(it)
+            it.size
+        }
+        table.add(size)
+        table.add(checksum.value.toInt())
+        sectionsCount += 1
+        sectionsSize += size
+        if (seekable != null) channel.transfer(buffers.asList())
+        else pending.addAll(buffers)
+    }
+
+    fun finish() {
+        if (seekable == null) {
+            channel.transfer(listOf(preamble()) + pending + table)
+            return
+        }
+        channel.transfer(listOf(table))
+        val end = seekable.position()
+        seekable.position(start)
+        channel.transfer(listOf(preamble()))
+        seekable.position(end)
+    }
+}
+
+/**
+ * Seekable channels (e.g. files) get each section as soon as it is added, see [ArtifactWriter]
+ */
+fun artifactOf(
+    kind: ArtifactKind,
+    channel: WritableByteChannel,
+    encoding: Encoding = Encoding.Fixed,
+    action: (artifact: ArtifactWriter) -> Unit
+) = ArtifactWriter(kind, channel, encoding).also(action).finish()
+
+fun artifactOf(
+    kind: ArtifactKind,
+    output: OutputStream,
+    encoding: Encoding = Encoding.Fixed,
+    action: (artifact: ArtifactWriter) -> Unit
+) = artifactOf(kind, Channels.newChannel(output), encoding, action)
+
+private fun BufferView.checkFormatVersion(kind: ArtifactKind) {
+    val formatVersion = readInt(4)
+    if (formatVersion != ArtifactFormatVersion)
+        throw IllegalStateException("Unsupported $kind artifact format version $formatVersion")
+}
+
+/**
+ * Returns the view of the artifact sections with the encoding recorded in the header,
+ * artifacts written before the header existed are returned as they are.
+ * Only the magic and format version are checked, the checksums are checked by [isValidArtifact]
+ */
+fun BufferView.artifact(kind: ArtifactKind): BufferView {
+    if (readInt(0) != kind.magic) return this
+    checkFormatVersion(kind)
+    return OffsetBufferView(PreambleSize, this, Encoding.entries[readInt(12)])
+}
+
+/**
+ * Returns a view of each section, null for artifacts written before the header existed
+ */
+fun BufferView.artifactSections(kind: ArtifactKind): List<BufferView>? {
+    if (readInt(0) != kind.magic) return null
+    val sections = artifact(kind)
+    val table = readInt(20)
+    var position = 0
+    return (0 until readInt(16)).map { index ->
+        sections.bufferFrom(position).also {
+            position += readInt(table + index * SectionEntrySize)
+        }
+    }
+}
+
+/**
+ * An artifact is valid when it has a header written by this compiler and the checksum of every section matches
+ */
+fun BufferView.isValidArtifact(kind: ArtifactKind): Boolean =
+    try {
+        readInt(0) == kind.magic
+                && readInt(4) == ArtifactFormatVersion
+                && readInt(8) == CompilerVersion
+                && readInt(12) in Encoding.entries.indices
+                && readInt(20).let { table ->
+            var position = PreambleSize
+            (0 until readInt(16)).all { index ->
+                val entry = table + index * SectionEntrySize
+                val size = readInt(entry)
+                (checksum(position, size) == readInt(entry + 4)).also {
+                    position += size
+                }
+            } && position == table
+        }
+    } catch (e: IndexOutOfBoundsException) {
+        false
+    }
@@ -5,17 +5,41 @@ import io.netty.buffer.PooledByteBufAllocator
 import io.netty.buffer.Unpooled
 import java.io.InputStream
 import java.io.OutputStream
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.channels.GatheringByteChannel
+import java.nio.channels.WritableByteChannel
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import java.util.zip.CRC32C
+import java.util.zip.Checksum
 
 private val allocator = PooledByteBufAllocator.DEFAULT
 
+/**
+ * Encoding of the values that support a compact representation (e.g. locations),
+ * it is recorded in the artifact header.
+ *
+ * Release moves the locations to a [LocationTable], the code only keeps their index
+ */
+enum class Encoding {
+    Fixed,
+    Compact,
+    Release
+}
+
 /**
  * Endianess is BIG_ENDIAN
  */
-interface BufferWriter {
+sealed interface BufferWriter {
 
     val size: Int
+    val encoding: Encoding
+    val locations: LocationTableBuilder? get() = null
     fun add(value: String): Int
 
+    fun add(value: Byte)
+
     fun add(value: ByteArray)
 
     fun set(index: Int, value: Int)
@@ -23,6 +47,18 @@ interface BufferWriter {
     fun add(value: Long)
     fun add(double: Double)
 
+    /**
+     * Writes a block in place, the block starts with its size (including the size itself)
+     * that is back-patched once the action finishes. Inside the action the writer size and
+     * set indexes are relative to the block start. The block is transferred with its buffer
+     */
+    fun sized(action: (block: BufferWriter) -> Unit)
+}
+
+/**
+ * Buffer that owns its content, only these buffers are transferred
+ */
+sealed interface TransferableBufferWriter : BufferWriter {
     /**
      * Once the buffer is transferred it is destroyed
      */
@@ -39,6 +75,16 @@ interface BufferWriter {
  */
 interface BufferView {
     val offset: Int get() = 0
+    val encoding: Encoding get() = Encoding.Fixed
+    val locations: LocationTable? get() = null
+
+    /**
+     * Strings of artifacts that share a string pool (e.g. the modules of a bundle),
+     * null when the artifact has its own string pool section
+     */
+    val sharedStringPool: BinaryTableView? get() = null
+
+    fun readByte(index: Int): Byte
 
     fun readInt(index: Int): Int
 
@@ -48,28 +94,57 @@ interface BufferView {
 
     fun readString(index: Int, size: Int): String
 
+    fun readBytes(index: Int, size: Int): ByteArray
+
+    /**
+     * CRC32C of the bytes in the range
+     */
+    fun checksum(index: Int, size: Int): Int
+
     fun bufferFrom(offset: Int) = OffsetBufferView(offset, this)
 
 }
 
-class OffsetBufferView(override val offset: Int, private val bufferView: BufferView) : BufferView {
+class OffsetBufferView(
+    override val offset: Int,
+    private val bufferView: BufferView,
+    override val encoding: Encoding = bufferView.encoding,
+    override val locations: LocationTable? = bufferView.locations,
+    override val sharedStringPool: BinaryTableView? = bufferView.sharedStringPool
+) : BufferView {
+    override fun readByte(index: Int): Byte = bufferView.readByte(offset + index)
     override fun readLong(index: Int): Long = bufferView.readLong(offset + index)
     override fun readDouble(index: Int): Double = bufferView.readDouble(offset + index)
     override fun readInt(index: Int): Int = bufferView.readInt(offset + index)
     override fun readString(index: Int, size: Int): String = bufferView.readString(offset + index, size)
-    override fun bufferFrom(offset: Int) = OffsetBufferView(offset + this.offset, bufferView)
+    override fun readBytes(index: Int, size: Int): ByteArray = bufferView.readBytes(offset + index, size)
+    override fun checksum(index: Int, size: Int): Int = bufferView.checksum(offset + index, size)
+    override fun bufferFrom(offset: Int) = OffsetBufferView(
+        offset + this.offset,
+        bufferView,
+        encoding,
+        locations,
+        sharedStringPool
+    )
 
 }
 
 /**
  * Calling methods after the buffer is written produce an exception
  */
-private class BufferWriterImpl : BufferWriter {
-    private val buffer: ByteBuf = allocator.directBuffer()
+private class BufferWriterImpl(
+    override val encoding: Encoding,
+    override val locations: LocationTableBuilder?
+) : TransferableBufferWriter {
+    val buffer: ByteBuf = allocator.directBuffer()
 
     override val size: Int get() = buffer.readableBytes()
     override fun add(value: String): Int = buffer.writeCharSequence(value, Charsets.UTF_8)
 
+    override fun add(value: Byte) {
+        buffer.writeByte(value.toInt())
+    }
+
     override fun set(index: Int, value: Int) {
         buffer.setInt(index, value)
     }
@@ -98,27 +173,102 @@ private class BufferWriterImpl : BufferWriter {
     override fun transferTo(buffer: BufferWriter) {
         when (buffer) {
             is BufferWriterImpl -> buffer.buffer.writeBytes(this.buffer)
+            is BlockBufferWriter -> buffer.parent.buffer.writeBytes(this.buffer)
         }
         this.buffer.release()
     }
 
+    override fun sized(action: (block: BufferWriter) -> Unit) {
+        val start = size
+        buffer.writeInt(0)
+        action(BlockBufferWriter(start, this))
+        buffer.setInt(start, size - start)
+    }
+
+}
+
+private class BlockBufferWriter(private val start: Int, val parent: BufferWriterImpl) : BufferWriter {
+    override val size: Int get() = parent.size - start
+    override val encoding: Encoding get() = parent.encoding
+    override val locations: LocationTableBuilder? get() = parent.locations
+    override fun add(value: String): Int = parent.add(value)
+    override fun add(value: Byte) = parent.add(value)
+    override fun add(value: ByteArray) = parent.add(value)
+    override fun set(index: Int, value: Int) = parent.set(start + index, value)
+    override fun add(value: Int) = parent.add(value)
+    override fun add(value: Long) = parent.add(value)
+    override fun add(double: Double) = parent.add(double)
+    override fun sized(action: (block: BufferWriter) -> Unit) = parent.sized(action)
 }
 
 private class BufferViewImpl(private val byteBuf: ByteBuf) : BufferView {
+    override fun readByte(index: Int): Byte = byteBuf.getByte(index)
     override fun readInt(index: Int) = byteBuf.getInt(index)
     override fun readLong(index: Int): Long = byteBuf.getLong(index)
     override fun readDouble(index: Int): Double = byteBuf.getDouble(index)
     override fun readString(index: Int, size: Int): String = byteBuf.toString(index, size, Charsets.UTF_8)
+    override fun readBytes(index: Int, size: Int): ByteArray = ByteArray(size).also { byteBuf.getBytes(index, it) }
+    override fun checksum(index: Int, size: Int): Int = CRC32C().run {
+        update(byteBuf.nioBuffer(index, size))
+        value.toInt()
+    }
+}
+
+private val TransferableBufferWriter.byteBuf: ByteBuf
+    get() = when (this) {
+        is BufferWriterImpl -> buffer
+    }
+
+fun Checksum.update(buffer: TransferableBufferWriter) {
+    update(buffer.byteBuf.nioBuffer())
+}
+
+/**
+ * Writes the buffers with a gathering write when the channel supports it, once the buffers are transferred
+ * they are destroyed
+ */
+fun WritableByteChannel.transfer(buffers: List<TransferableBufferWriter>) {
+    val nioBuffers = buffers.map { it.byteBuf.nioBuffer() }.toTypedArray()
+    if (this is GatheringByteChannel) {
+        while (nioBuffers.any { it.hasRemaining() }) write(nioBuffers)
+    } else nioBuffers.forEach {
+        while (it.hasRemaining()) write(it)
+    }
+    buffers.forEach { it.byteBuf.release() }
 }
 
-fun newBufferWriter(): BufferWriter = BufferWriterImpl()
+fun newBufferWriter(
+    encoding: Encoding = Encoding.Fixed,
+    locations: LocationTableBuilder? = null
+): TransferableBufferWriter = BufferWriterImpl(encoding, locations)
+
+fun <T> InputStream.bufferView(action: (view: BufferView) -> T): T =
+    Unpooled.wrappedBuffer(readBytes()).bufferView(action)
+
+fun <T> ByteBuffer.bufferView(action: (view: BufferView) -> T): T =
+    Unpooled.wrappedBuffer(this).bufferView(action)
 
-fun <T> InputStream.bufferView(action: (view: BufferView) -> T): T {
-    val buffer = Unpooled.buffer().apply {
-        val bytes = this@bufferView.readBytes()
-        writeBytes(bytes)
+private fun Path.map(): ByteBuffer =
+    FileChannel.open(this, StandardOpenOption.READ).use { channel ->
+        channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
     }
-    val result = action(BufferViewImpl(buffer))
-    buffer.release()
+
+/**
+ * The file is mapped in memory instead of copied, the view is valid only inside the action
+ */
+fun <T> Path.mappedBufferView(action: (view: BufferView) -> T): T =
+    map().bufferView(action)
+
+/**
+ * Views not released, they are valid while they are referenced.
+ * Used when the binary is decoded on demand, e.g. the ir functions
+ */
+fun Path.mappedBufferView(): BufferView = BufferViewImpl(Unpooled.wrappedBuffer(map()))
+
+fun ByteArray.bufferView(): BufferView = BufferViewImpl(Unpooled.wrappedBuffer(this))
+
+private fun <T> ByteBuf.bufferView(action: (view: BufferView) -> T): T {
+    val result = action(BufferViewImpl(this))
+    release()
     return result
 }
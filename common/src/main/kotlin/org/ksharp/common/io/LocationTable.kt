@@ -0,0 +1,61 @@
+package org.ksharp.common.io
+
+import org.ksharp.common.Line
+import org.ksharp.common.Location
+import org.ksharp.common.Offset
+import java.io.OutputStream
+import java.nio.channels.Channels
+import java.nio.channels.WritableByteChannel
+
+private const val LocationSize = 16
+
+/**
+ * Locations moved out of the code by the [Encoding.Release] encoding, they are stored in the `.ksl` file
+ */
+fun interface LocationTable {
+    operator fun get(index: Int): Location
+}
+
+class LocationTableBuilder {
+    private val buffer = newBufferWriter()
+
+    var size: Int = 0
+        private set
+
+    fun add(location: Location): Int {
+        buffer.add(location.start.first.value)
+        buffer.add(location.start.second.value)
+        buffer.add(location.end.first.value)
+        buffer.add(location.end.second.value)
+        return size++
+    }
+
+    fun writeTo(channel: WritableByteChannel) {
+        artifactOf(ArtifactKind.Locations, channel) {
+            it.section(buffer)
+        }
+    }
+
+    fun writeTo(output: OutputStream) = writeTo(Channels.newChannel(output))
+}
+
+fun BufferView.readLocationTable(): LocationTable =
+    artifact(ArtifactKind.Locations).let { view ->
+        LocationTable { index ->
+            val position = index * LocationSize
+            Location(
+                Line(view.readInt(position)) to Offset(view.readInt(position + 4)),
+                Line(view.readInt(position + 8)) to Offset(view.readInt(position + 12))
+            )
+        }
+    }
+
+/**
+ * The table is read the first time a location is requested
+ */
+fun lazyLocationTable(load: () -> LocationTable?): LocationTable {
+    val table by lazy(load)
+    return LocationTable { index ->
+        table?.get(index) ?: Location.NoProvided
+    }
+}
@@ -0,0 +1,41 @@
+package org.ksharp.common.io
+
+private fun Int.zigzag(): Int = (this shl 1) xor (this shr 31)
+
+/**
+ * LEB128 encoding, the value is zigzag encoded first so small negative values are short too
+ */
+fun BufferWriter.addVarInt(value: Int) {
+    var remaining = value.zigzag()
+    while (remaining and 0x7F.inv() != 0) {
+        add(((remaining and 0x7F) or 0x80).toByte())
+        remaining = remaining ushr 7
+    }
+    add(remaining.toByte())
+}
+
+fun BufferView.readVarInt(index: Int): Int {
+    var result = 0
+    var shift = 0
+    var position = index
+    while (true) {
+        val byte = readByte(position++).toInt()
+        result = result or ((byte and 0x7F) shl shift)
+        if (byte and 0x80 == 0) break
+        shift += 7
+    }
+    return (result ushr 1) xor -(result and 1)
+}
+
+/**
+ * Number of bytes used to encode the value
+ */
+fun varIntSize(value: Int): Int {
+    var remaining = value.zigzag()
+    var size = 1
+    while (remaining and 0x7F.inv() != 0) {
+        remaining = remaining ushr 7
+        size += 1
+    }
+    return size
+}
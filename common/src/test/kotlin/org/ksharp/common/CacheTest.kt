@@ -18,4 +18,26 @@ class CacheTest : StringSpec({
         }.shouldBe("Value 1")
         hits.get().shouldBe(1)
     }
-})
\ No newline at end of file
+    "LRU cache evicts the least recently used entry" {
+        val cache = lruCacheOf<String, String>(2)
+        cache.put("Key1", "Value 1")
+        cache.put("Key2", "Value 2")
+        cache["Key1"].shouldBe("Value 1")
+        cache.put("Key3", "Value 3")
+        cache["Key2"].shouldBe(null)
+        cache["Key3"].shouldBe("Value 3")
+        cache.size.shouldBe(2)
+        cache.hits.shouldBe(2)
+        cache.misses.shouldBe(1)
+        cache.evictions.shouldBe(1)
+    }
+    "LRU cache by weight" {
+        val cache = lruCacheOf<String, String>(10) { _, value -> value.length.toLong() }
+        cache.get("Key1") { "12345" }.shouldBe("12345")
+        cache.get("Key2") { "123456" }.shouldBe("123456")
+        cache["Key1"].shouldBe(null)
+        cache.get("Key3") { null }.shouldBe(null)
+        cache.size.shouldBe(1)
+        cache.misses.shouldBe(4)
+    }
+})
@@ -0,0 +1,23 @@
+package org.ksharp.common
+
+import io.kotest.core.spec.style.StringSpec
+import io.kotest.matchers.collections.shouldBeEmpty
+import io.kotest.matchers.shouldBe
+import java.util.concurrent.ForkJoinPool
+
+class ChunksTest : StringSpec({
+    val pool = ForkJoinPool(4)
+    afterSpec { pool.shutdown() }
+    "Transform in chunks keeping the order" {
+        pool.mapChunks(1000, 64) { it * 2 }
+            .shouldBe((0 until 1000).map { it * 2 })
+    }
+    "Transform less items than a chunk" {
+        pool.mapChunks(3) { it.toString() }
+            .shouldBe(listOf("0", "1", "2"))
+    }
+    "Transform no items" {
+        pool.mapChunks(0) { it }
+            .shouldBeEmpty()
+    }
+})
@@ -0,0 +1,100 @@
+package org.ksharp.common.io
+
+import io.kotest.assertions.throwables.shouldThrow
+import io.kotest.core.spec.style.StringSpec
+import io.kotest.engine.spec.tempfile
+import io.kotest.matchers.booleans.shouldBeFalse
+import io.kotest.matchers.booleans.shouldBeTrue
+import io.kotest.matchers.shouldBe
+import java.io.ByteArrayOutputStream
+import java.io.FileOutputStream
+
+private fun artifactBytes(): ByteArray =
+    ByteArrayOutputStream().also { output ->
+        artifactOf(ArtifactKind.Module, output) {
+            it.section(newBufferWriter().apply { add(78) })
+            it.section(newBufferWriter().apply { add("Hello".toByteArray()) })
+        }
+    }.toByteArray()
+
+class ArtifactTest : StringSpec({
+    "Write and read an artifact" {
+        val bytes = artifactBytes()
+        bytes.size.shouldBe(24 + 4 + 5 + 2 * 8)
+        bytes.bufferView().apply {
+            readInt(0).shouldBe(ArtifactKind.Module.magic)
+            readInt(4).shouldBe(ArtifactFormatVersion)
+            readInt(8).shouldBe(CompilerVersion)
+            readInt(12).shouldBe(Encoding.Fixed.ordinal)
+            readInt(16).shouldBe(2)
+            readInt(20).shouldBe(24 + 4 + 5)
+            readInt(33).shouldBe(4)
+            readInt(41).shouldBe(5)
+            isValidArtifact(ArtifactKind.Module).shouldBeTrue()
+            isValidArtifact(ArtifactKind.Code).shouldBeFalse()
+            artifact(ArtifactKind.Module).apply {
+                encoding.shouldBe(Encoding.Fixed)
+                readInt(0).shouldBe(78)
+                readString(4, 5).shouldBe("Hello")
+            }
+            artifactSections(ArtifactKind.Module)!!.apply {
+                size.shouldBe(2)
+                this[0].readInt(0).shouldBe(78)
+                this[1].readString(0, 5).shouldBe("Hello")
+            }
+        }
+    }
+    "Corrupted artifact is not valid" {
+        val bytes = artifactBytes()
+        bytes[24 + 4 + 4] = 'o'.code.toByte().inc()
+        bytes.bufferView().isValidArtifact(ArtifactKind.Module).shouldBeFalse()
+        bytes.copyOf(bytes.size - 2).bufferView().isValidArtifact(ArtifactKind.Module).shouldBeFalse()
+        ByteArray(2).bufferView().isValidArtifact(ArtifactKind.Module).shouldBeFalse()
+    }
+    "Artifact without header is read as it is" {
+        val view = ByteArrayOutputStream().also { output ->
+            newBufferWriter().apply {
+                add(78)
+                transferTo(output)
+            }
+        }.toByteArray().bufferView()
+        view.isValidArtifact(ArtifactKind.Module).shouldBeFalse()
+        view.artifact(ArtifactKind.Module).readInt(0).shouldBe(78)
+    }
+    "Encoding is recorded in the header" {
+        val bytes = ByteArrayOutputStream().also { output ->
+            artifactOf(ArtifactKind.Code, output, Encoding.Compact) {
+                it.section(newBufferWriter(Encoding.Compact).apply { addVarInt(300) })
+            }
+        }.toByteArray()
+        bytes.bufferView().apply {
+            isValidArtifact(ArtifactKind.Code).shouldBeTrue()
+            artifact(ArtifactKind.Code).apply {
+                encoding.shouldBe(Encoding.Compact)
+                readVarInt(0).shouldBe(300)
+                bufferFrom(0).encoding.shouldBe(Encoding.Compact)
+            }
+        }
+    }
+    "Artifact written to a file is back-patched" {
+        val file = tempfile()
+        FileOutputStream(file).use { output ->
+            output.write(ByteArray(3))
+            artifactOf(ArtifactKind.Module, output.channel) {
+                it.section(newBufferWriter().apply { add(78) })
+                it.section(newBufferWriter().apply { add("Hello".toByteArray()) })
+            }
+        }
+        val bytes = file.readBytes()
+        bytes.size.shouldBe(3 + 24 + 4 + 5 + 2 * 8)
+        bytes.copyOfRange(3, bytes.size).shouldBe(artifactBytes())
+    }
+    "Unsupported format version" {
+        val bytes = artifactBytes()
+        bytes[7] = (ArtifactFormatVersion + 1).toByte()
+        shouldThrow<IllegalStateException> {
+            bytes.bufferView().artifact(ArtifactKind.Module)
+        }
+        bytes.bufferView().isValidArtifact(ArtifactKind.Module).shouldBeFalse()
+    }
+})
@@ -1,10 +1,12 @@
 package org.ksharp.common.io
 
 import io.kotest.core.spec.style.StringSpec
+import io.kotest.engine.spec.tempfile
 import io.kotest.matchers.nulls.shouldNotBeNull
 import io.kotest.matchers.shouldBe
 import java.io.ByteArrayInputStream
 import java.io.ByteArrayOutputStream
+import java.nio.file.Files
 
 class BufferTest : StringSpec({
     "Test buffer writer and buffer view" {
@@ -82,4 +84,68 @@ class BufferTest : StringSpec({
             it.readInt(13).shouldBe(6)
         }.shouldNotBeNull()
     }
+    "Test mapped buffer view" {
+        val file = tempfile().toPath()
+        Files.newOutputStream(file).use { output ->
+            newBufferWriter().apply {
+                add(78)
+                add("Hello")
+                add(150L)
+                transferTo(output)
+            }
+        }
+        file.mappedBufferView {
+            it.readInt(0).shouldBe(78)
+            it.readString(4, 5).shouldBe("Hello")
+            it.readLong(9).shouldBe(150L)
+            it.bufferFrom(4).readString(0, 5)
+        }.shouldBe("Hello")
+    }
+    "Test sized blocks written in place" {
+        val output = ByteArrayOutputStream()
+        newBufferWriter().apply {
+            add(1)
+            sized { block ->
+                block.add(5)
+                block.sized { inner ->
+                    inner.add(150L)
+                    inner.size.shouldBe(12)
+                }
+                block.add(6)
+                block.size.shouldBe(24)
+            }
+            newBufferWriter().apply {
+                add(7)
+            }.transferTo(this)
+            size.shouldBe(32)
+            transferTo(output)
+        }
+        ByteArrayInputStream(output.toByteArray()).bufferView {
+            it.readInt(0).shouldBe(1)
+            it.readInt(4).shouldBe(24)
+            it.readInt(8).shouldBe(5)
+            it.readInt(12).shouldBe(12)
+            it.readLong(16).shouldBe(150L)
+            it.readInt(24).shouldBe(6)
+            it.readInt(28).shouldBe(7)
+        }
+    }
+    "Test var ints" {
+        val values = listOf(0, 1, -1, 63, -64, 64, 300, -300, Int.MAX_VALUE, Int.MIN_VALUE)
+        val output = ByteArrayOutputStream()
+        newBufferWriter(Encoding.Compact).apply {
+            encoding.shouldBe(Encoding.Compact)
+            values.forEach(::addVarInt)
+            size.shouldBe(values.sumOf(::varIntSize))
+            transferTo(output)
+        }
+        varIntSize(0).shouldBe(1)
+        varIntSize(64).shouldBe(2)
+        varIntSize(Int.MIN_VALUE).shouldBe(5)
+        output.toByteArray().bufferView().apply {
+            var position = 0
+            values.map { readVarInt(position).also { position += varIntSize(it) } }
+                .shouldBe(values)
+        }
+    }
 })
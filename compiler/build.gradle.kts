@@ -12,6 +12,7 @@ dependencies {
     implementation(project(":ir"))
     implementation(project(":typesystem"))
     implementation(project(":docs"))
+    implementation(libs.graalvm.sdk)
     implementation(libs.graalvm.truffle.api)
     testImplementation(project(":test"))
     testImplementation(libs.kotest)
@@ -30,3 +31,19 @@ tasks {
         )
     }
 }
+
+tasks.register<JavaExec>("run-ksc") {
+    group = "ksharp"
+    description = "Run a function of a compiled module through the polyglot engine"
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass.set("org.ksharp.compiler.polyglot.KSharpRunnerKt")
+    jvmArgs = listOf(
+        "--add-exports", "org.graalvm.truffle/com.oracle.truffle.api=ALL-UNNAMED",
+        "--add-exports", "org.graalvm.truffle/com.oracle.truffle.api.nodes=ALL-UNNAMED",
+        "--add-exports", "org.graalvm.truffle/com.oracle.truffle.api.strings=ALL-UNNAMED",
+        "--add-exports", "org.graalvm.truffle/com.oracle.truffle.api.staticobject=ALL-UNNAMED",
+        "--add-exports", "org.graalvm.truffle/com.oracle.truffle.api.dsl=ALL-UNNAMED",
+        "--add-exports", "org.graalvm.truffle/com.oracle.truffle.api.frame=ALL-UNNAMED",
+        "--add-exports", "org.graalvm.truffle/com.oracle.truffle.api.interop=ALL-UNNAMED"
+    )
+}
@@ -0,0 +1,118 @@
+package org.ksharp.compiler.loader
+
+import org.ksharp.common.Either
+import org.ksharp.common.Error
+import org.ksharp.common.isLeft
+import org.ksharp.common.new
+import org.ksharp.nodes.ModuleNode
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.Executor
+import java.util.concurrent.ForkJoinPool
+
+private typealias ErrorsOrNode = Either<List<Error>, ModuleNode>
+
+/**
+ * A module to build, node is null when the source didn't change since the last build,
+ * in that case the module is compiled again only if the interface of a dependency changed
+ */
+private class ScheduledModule(
+    val node: ErrorsOrNode?,
+    val dependencies: List<String>
+)
+
+/**
+ * Compile a set of modules and the modules they import, independent modules are compiled in parallel
+ * and a module waits only for the modules it imports.
+ *
+ * The executor is configurable, e.g. on jdk 21 `Executors.newVirtualThreadPerTaskExecutor()` can be used
+ */
+class BuildScheduler(
+    private val loader: ModuleLoader,
+    private val executor: Executor = ForkJoinPool.commonPool()
+) {
+    private fun ErrorsOrNode.toScheduledModule() =
+        ScheduledModule(this, valueOrNull?.imports?.map { it.moduleName } ?: emptyList())
+
+    private fun scheduledModule(name: String): ScheduledModule? =
+        loader.unchangedDependencies(name)
+            ?.let { ScheduledModule(null, it) }
+            ?: loader.parse(name)?.toScheduledModule()
+
+    /**
+     * Parse the modules in waves, each wave parse in parallel the imports discovered by the previous one
+     */
+    private fun parse(modules: Collection<String>): Map<String, ScheduledModule> {
+        val parsed = mutableMapOf<String, ScheduledModule>()
+        val visited = mutableSetOf<String>()
+        var wave = modules.filter { visited.add(it) }
+        while (wave.isNotEmpty()) {
+            val nodes = wave.map { name ->
+                name to CompletableFuture.supplyAsync({ scheduledModule(name) }, executor)
+            }.mapNotNull { (name, future) ->
+                future.join()?.let { name to it }
+            }
+            parsed.putAll(nodes)
+            wave = nodes.flatMap { (_, module) ->
+                module.dependencies
+            }.filter { visited.add(it) }
+        }
+        return parsed
+    }
+
+    private fun cyclingReference(name: String, from: Set<String>): ErrorsOrModule =
+        Either.Left(
+            listOf(
+                ModuleLoaderErrorCode.CyclingReference.new(
+                    "module" to name,
+                    "from" to from.joinToString(", ")
+                )
+            )
+        )
+
+    private fun dependencyNotCompiled(name: String, dependency: String): ErrorsOrModule =
+        Either.Left(
+            listOf(
+                ModuleLoaderErrorCode.DependencyNotCompiled.new(
+                    "module" to name,
+                    "dependency" to dependency
+                )
+            )
+        )
+
+    /**
+     * Returns the result of each module with source, modules without source (e.g. libraries) are not included
+     */
+    fun build(modules: Collection<String>): Map<String, ErrorsOrModule> {
+        val parsed = parse(modules)
+        val graph = parsed.mapValues { (_, module) ->
+            module.dependencies.filter(parsed::containsKey)
+        }
+        val cycles = CyclingReferences().cycles(graph)
+        val scheduled = mutableMapOf<String, CompletableFuture<ErrorsOrModule>>()
+
+        fun schedule(name: String): CompletableFuture<ErrorsOrModule> = scheduled[name] ?: run {
+            val cycle = cycles[name]
+            val node = parsed.getValue(name).node
+            when {
+                cycle != null -> CompletableFuture.completedFuture(cyclingReference(name, cycle))
+                node is Either.Left -> CompletableFuture.completedFuture<ErrorsOrModule>(node)
+                else -> {
+                    val dependencies = graph.getValue(name).associateWith(::schedule)
+                    CompletableFuture.allOf(*dependencies.values.toTypedArray())
+                        .thenApplyAsync({
+                            dependencies.entries
+                                .firstOrNull { it.value.join().isLeft }
+                                ?.let { dependencyNotCompiled(name, it.key) }
+                                ?: node?.valueOrNull?.let { loader.compile(name, it) }
+                                ?: loader.load(name, "")
+                        }, executor)
+                }
+            }.also { scheduled[name] = it }
+        }
+
+        parsed.keys.forEach(::schedule)
+        return scheduled.mapValues { it.value.join() }
+    }
+
+    fun build(vararg modules: String): Map<String, ErrorsOrModule> = build(modules.toList())
+}
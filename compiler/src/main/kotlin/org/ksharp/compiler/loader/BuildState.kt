@@ -0,0 +1,72 @@
+package org.ksharp.compiler.loader
+
+import org.ksharp.common.io.ArtifactKind
+import org.ksharp.common.io.BufferView
+import java.io.InputStream
+import java.io.OutputStream
+import java.nio.charset.StandardCharsets
+import java.security.MessageDigest
+
+/**
+ * Build state of a compiled module, it is stored in the `.ksb` file next to the module binaries
+ *
+ * @property source hash of the module source
+ * @property dependencies hash of the public interface (`.ksm`) of each dependency used to compile the module
+ */
+data class BuildState(
+    val source: String,
+    val dependencies: Map<String, String>
+)
+
+private fun MessageDigest.toHex(): String =
+    digest().joinToString("") { "%02x".format(it) }
+
+internal fun String.contentHash(): String =
+    MessageDigest.getInstance("SHA-256").run {
+        update(toByteArray(StandardCharsets.UTF_8))
+        toHex()
+    }
+
+internal fun InputStream.contentHash(): String =
+    MessageDigest.getInstance("SHA-256").run {
+        val buffer = ByteArray(8192)
+        while (true) {
+            val size = read(buffer)
+            if (size == -1) break
+            update(buffer, 0, size)
+        }
+        toHex()
+    }
+
+/**
+ * Hash of the size and checksum of each section of the artifact, empty for binaries without the artifact header
+ */
+internal fun BufferView.sectionsHash(kind: ArtifactKind): String =
+    if (readInt(0) != kind.magic) ""
+    else MessageDigest.getInstance("SHA-256").run {
+        val table = readInt(20)
+        update(readBytes(table, readInt(16) * 8))
+        toHex()
+    }
+
+fun BuildState.writeTo(output: OutputStream) {
+    output.writer(StandardCharsets.UTF_8).apply {
+        appendLine(source)
+        dependencies.forEach { (name, hash) ->
+            appendLine("$name $hash")
+        }
+    }.flush()
+}
+
+fun InputStream.readBuildState(): BuildState? =
+    reader(StandardCharsets.UTF_8).readLines().let { lines ->
+        if (lines.isEmpty()) null
+        else BuildState(
+            lines.first(),
+            lines.asSequence()
+                .drop(1)
+                .filter { it.isNotBlank() }
+                .map { it.substringBefore(' ') to it.substringAfter(' ') }
+                .toMap()
+        )
+    }
@@ -0,0 +1,151 @@
+package org.ksharp.compiler.loader
+
+import org.ksharp.common.io.*
+import org.ksharp.doc.writeTo
+import org.ksharp.ir.serializer.writeTo
+import org.ksharp.module.bytecode.StringPoolBuilder
+import org.ksharp.module.bytecode.StringPoolView
+import org.ksharp.module.bytecode.writeTo
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.InputStream
+import java.io.OutputStream
+import java.io.Reader
+import java.nio.channels.WritableByteChannel
+import java.nio.file.Path
+
+private const val EntrySize = 12
+
+private data class BundleEntry(val offset: Int, val size: Int)
+
+/**
+ * The modules and code of a bundle are encoded with the string pool of the bundle
+ */
+private val String.pooled: Boolean
+    get() = endsWith(".ksm") || endsWith(".ksc")
+
+private class BundleDirectory(private val stringPool: StringPoolBuilder) {
+    val directory = newBufferWriter().apply { add(0) }
+    val data = newBufferWriter()
+    private var entries = 0
+
+    fun add(path: String, write: (OutputStream) -> Unit) {
+        val bytes = ByteArrayOutputStream().also(write).toByteArray()
+        directory.add(stringPool.add(path))
+        directory.add(data.size)
+        directory.add(bytes.size)
+        data.add(bytes)
+        entries += 1
+    }
+
+    fun finish() {
+        directory.set(0, entries)
+    }
+}
+
+/**
+ * Writes the binaries of the modules in a single file.
+ *
+ * Sections: directory | data | string pool
+ *
+ * the directory has an entry (path, offset, size) for each binary, the offsets are relative to the data section.
+ * The modules are encoded again with the string pool of the bundle, so the strings shared by the modules
+ * (e.g. type and function names) are stored once and the binaries don't have their own string pool section
+ */
+fun Collection<Module>.writeBundle(output: OutputStream, encoding: Encoding = Encoding.Fixed) {
+    val stringPool = StringPoolBuilder()
+    val bundle = BundleDirectory(stringPool)
+    forEach { module ->
+        bundle.add(module.name.toModulePath("ksm")) {
+            module.info.writeTo(it, stringPool)
+        }
+        val locations = if (encoding == Encoding.Release) LocationTableBuilder() else null
+        bundle.add(module.name.toModulePath("ksc")) {
+            module.sourceMappedIrModule.writeTo(it, encoding, locations, stringPool)
+        }
+        bundle.add(module.name.toModulePath("ksd")) {
+            module.documentation.writeTo(it)
+        }
+        if (locations != null) {
+            bundle.add(module.name.toModulePath("ksl"), locations::writeTo)
+        }
+    }
+    bundle.finish()
+    artifactOf(ArtifactKind.Bundle, output) {
+        it.section(bundle.directory)
+        it.section(bundle.data)
+        stringPool.writeTo(it)
+    }
+}
+
+/**
+ * Loads the binaries from a bundle, the sources and outputs are delegated to the fallback loader.
+ * Binaries not found in the bundle are loaded by the fallback loader too.
+ *
+ * The modules (`.ksm`) and code (`.ksc`) are decoded with the string pool of the bundle, so they are read
+ * through [binaryView] or [binaryBuffer], [binaryLoad] returns null for them as their bytes can't be decoded alone.
+ * With intern the names of the bundle are interned, see [StringPoolView]
+ */
+class BundleSourceLoader(
+    view: BufferView,
+    private val fallback: SourceLoader? = null,
+    intern: Boolean = false
+) : SourceLoader {
+    private val data: BufferView
+    private val entries: Map<String, BundleEntry>
+
+    init {
+        val (directory, sections, pool) = view.artifactSections(ArtifactKind.Bundle)
+            ?: throw IllegalStateException("Invalid bundle, the artifact header is missing")
+        val stringPool = StringPoolView(pool, intern)
+        data = OffsetBufferView(0, sections, sections.encoding, sections.locations, stringPool)
+        entries = (0 until directory.readInt(0)).associate { index ->
+            val position = 4 + index * EntrySize
+            stringPool[directory.readInt(position)] to BundleEntry(
+                directory.readInt(position + 4),
+                directory.readInt(position + 8)
+            )
+        }
+    }
+
+    val paths: Set<String> get() = entries.keys
+
+    override fun binaryLoad(path: String): InputStream? =
+        entries[path].let {
+            if (it == null) fallback?.binaryLoad(path)
+            else if (path.pooled) null
+            else ByteArrayInputStream(data.readBytes(it.offset, it.size))
+        }
+
+    override fun <T> binaryView(path: String, action: (BufferView) -> T): T? =
+        entries[path].let {
+            if (it != null) action(data.bufferFrom(it.offset))
+            else fallback?.binaryView(path, action)
+        }
+
+    override fun binaryBuffer(path: String): BufferView? =
+        entries[path]?.let { data.bufferFrom(it.offset) }
+            ?: fallback?.binaryBuffer(path)
+
+    override fun sourceLoad(path: String): Reader? =
+        fallback?.sourceLoad(path)
+
+    override fun outputStream(path: String, action: (OutputStream) -> Unit) {
+        if (fallback == null) throw UnsupportedOperationException("Bundle is read only, $path can't be written")
+        fallback.outputStream(path, action)
+    }
+
+    override fun channel(path: String, action: (WritableByteChannel) -> Unit) {
+        if (fallback == null) throw UnsupportedOperationException("Bundle is read only, $path can't be written")
+        fallback.channel(path, action)
+    }
+}
+
+/**
+ * The bundle is mapped once, the binaries are views of the mapping
+ */
+fun Path.bundleSourceLoader(fallback: SourceLoader? = null): SourceLoader =
+    BundleSourceLoader(mappedBufferView(), fallback)
+
+fun InputStream.bundleSourceLoader(fallback: SourceLoader? = null): SourceLoader =
+    BundleSourceLoader(use { it.readBytes() }.bufferView(), fallback)
@@ -8,6 +8,7 @@ class CyclingReferences {
     val pending: Sequence<String>
         get() = pendingModules.asSequence()
 
+    @Synchronized
     fun loading(module: String, from: String): Set<String> {
         if (from.isNotEmpty()) {
             (reference[from] ?: mutableSetOf<String>().also { reference[from] = it })
@@ -16,12 +17,13 @@ class CyclingReferences {
                 .add(from)
         }
         if (pendingModules.contains(module)) {
-            return referenced[module] ?: emptySet()
+            return referenced[module]?.toSet() ?: emptySet()
         }
         pendingModules.add(module)
         return emptySet()
     }
 
+    @Synchronized
     fun loaded(module: String) {
         pendingModules.remove(module)
         referenced[module]?.forEach { reference[it]?.remove(module) }
@@ -29,3 +31,25 @@ class CyclingReferences {
     }
 
 }
+
+/**
+ * Walk an import graph {module: dependencies} depth first,
+ * returns the modules closing a cycle with the modules referencing them in the cycle
+ */
+fun CyclingReferences.cycles(graph: Map<String, Collection<String>>): Map<String, Set<String>> {
+    val visited = mutableSetOf<String>()
+    val result = mutableMapOf<String, Set<String>>()
+    fun visit(module: String, from: String) {
+        val dependencies = loading(module, from)
+        if (dependencies.isNotEmpty()) {
+            result[module] = dependencies
+            return
+        }
+        if (visited.add(module)) {
+            graph[module]?.forEach { visit(it, module) }
+        }
+        loaded(module)
+    }
+    graph.keys.forEach { visit(it, "") }
+    return result
+}
@@ -1,11 +1,17 @@
 package org.ksharp.compiler.loader
 
+import org.ksharp.common.io.BufferView
+import org.ksharp.common.io.mappedBufferView
 import java.io.InputStream
 import java.io.OutputStream
 import java.io.Reader
+import java.nio.channels.FileChannel
+import java.nio.channels.WritableByteChannel
 import java.nio.charset.StandardCharsets
 import java.nio.file.Files
 import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+import java.nio.file.StandardOpenOption
 import kotlin.io.path.deleteIfExists
 
 class DirectorySourceLoader(
@@ -18,6 +24,17 @@ class DirectorySourceLoader(
             else null
         }
 
+    override fun <T> binaryView(path: String, action: (BufferView) -> T): T? =
+        binaries.resolve(path).let {
+            if (Files.exists(it)) it.mappedBufferView(action)
+            else null
+        }
+
+    override fun binaryBuffer(path: String): BufferView? =
+        binaries.resolve(path).let {
+            if (Files.exists(it)) it.mappedBufferView()
+            else null
+        }
 
     override fun sourceLoad(path: String): Reader? =
         sources.resolve(path).let {
@@ -25,15 +42,34 @@ class DirectorySourceLoader(
             else null
         }
 
-    override fun outputStream(path: String, action: (OutputStream) -> Unit) {
+    /**
+     * The binary is written to a temporal file and then moved, so views mapping
+     * the previous binary keep reading a complete file. When the write fails the previous binary is kept
+     */
+    private fun write(path: String, action: (Path) -> Unit) {
         binaries.resolve(path).let {
+            val temporal = it.resolveSibling("${it.fileName}.tmp")
             try {
-                Files.newOutputStream(it).use(action)
+                action(temporal)
+                Files.move(temporal, it, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
             } catch (e: Exception) {
-                it.deleteIfExists()
+                temporal.deleteIfExists()
                 throw e
             }
         }
     }
 
+    override fun outputStream(path: String, action: (OutputStream) -> Unit) =
+        write(path) { Files.newOutputStream(it).use(action) }
+
+    override fun channel(path: String, action: (WritableByteChannel) -> Unit) =
+        write(path) {
+            FileChannel.open(
+                it,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE
+            ).use(action)
+        }
+
 }
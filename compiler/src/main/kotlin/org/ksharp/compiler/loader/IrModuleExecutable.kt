@@ -1,16 +1,58 @@
 package org.ksharp.compiler.loader
 
+import org.ksharp.common.Location
 import org.ksharp.common.cast
 import org.ksharp.ir.IrFunction
 import org.ksharp.ir.IrModule
+import org.ksharp.ir.failureLocation
+import org.ksharp.ir.symbol
 
+/**
+ * Source location where the execution of a module function failed, it is attached to the failure
+ * as a suppressed exception so the failure keeps its type
+ */
+class ExecutionSite(
+    val function: String,
+    val location: Location
+) : RuntimeException(
+    "Error executing '$function' at ${location.start.first.value}:${location.start.second.value}",
+    null,
+    false,
+    false
+)
+
+val Throwable.executionSite: ExecutionSite?
+    get() = suppressed.firstOrNull { it is ExecutionSite }?.cast()
+
+/**
+ * The source mapped module is requested only when an execution fails,
+ * for modules compiled in release mode that is when the `.ksl` file is loaded
+ */
 class IrModuleExecutable(
-    private val irModule: IrModule
+    private val irModule: IrModule,
+    private val sourceMappedIrModule: () -> IrModule = { irModule }
 ) : ModuleExecutable {
-    override fun execute(name: String, vararg args: Any): Any =
-        irModule.symbols.first {
-            it.name == name && it is IrFunction
-        }.cast<IrFunction>()
-            .call(*args)
+    /**
+     * The symbol directory returns the first symbol with the name,
+     * the other symbols are checked only when it isn't a function
+     */
+    private fun function(name: String): IrFunction =
+        irModule.symbols.let { symbols ->
+            symbols.symbol(name) as? IrFunction
+                ?: symbols.firstOrNull { it.name == name && it is IrFunction }?.cast<IrFunction>()
+                ?: throw NoSuchElementException("Function '$name' not found in the module")
+        }
+
+    override fun execute(name: String, vararg args: Any): Any {
+        val function = function(name)
+        return try {
+            function.call(*args)
+        } catch (e: RuntimeException) {
+            irModule.failureLocation(e, sourceMappedIrModule)?.let {
+                e.addSuppressed(ExecutionSite(name, it))
+            }
+            throw e
+        }
+    }
 
 }
@@ -3,8 +3,17 @@ package org.ksharp.compiler.loader
 import org.ksharp.common.Either
 import org.ksharp.common.Error
 import org.ksharp.common.ErrorCode
+import org.ksharp.common.LruCache
+import org.ksharp.common.isRight
+import org.ksharp.common.lruCacheOf
+import org.ksharp.common.io.ArtifactKind
 import org.ksharp.common.io.BufferView
+import org.ksharp.common.io.Encoding
+import org.ksharp.common.io.LocationTableBuilder
 import org.ksharp.common.io.bufferView
+import org.ksharp.common.io.isValidArtifact
+import org.ksharp.common.io.lazyLocationTable
+import org.ksharp.common.io.readLocationTable
 import org.ksharp.common.new
 import org.ksharp.doc.DocModule
 import org.ksharp.doc.readDocModule
@@ -19,21 +28,33 @@ import org.ksharp.ir.toIrModule
 import org.ksharp.module.ModuleInfo
 import org.ksharp.module.bytecode.readModuleInfo
 import org.ksharp.module.bytecode.writeTo
+import org.ksharp.nodes.ModuleNode
 import org.ksharp.parser.ksharp.parseModule
 import org.ksharp.semantics.nodes.ModuleInfoLoader
 import org.ksharp.semantics.nodes.toCodeModule
 import java.io.InputStream
 import java.io.OutputStream
 import java.io.Reader
+import java.nio.channels.Channels
+import java.nio.channels.WritableByteChannel
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ForkJoinPool
 
 typealias ErrorsOrModule = Either<List<Error>, Module>
 
+private val artifactKinds = mapOf(
+    "ksm" to ArtifactKind.Module,
+    "ksc" to ArtifactKind.Code,
+    "ksd" to ArtifactKind.Doc
+)
+
 internal fun String.toModulePath(extension: String): String =
     "${this.replace('.', '/')}.$extension"
 
 enum class ModuleLoaderErrorCode(override val description: String) : ErrorCode {
     ModuleNotFound("Module '{name}' not found"),
-    CyclingReference("Cycling reference loading '{module}' from '{from}'")
+    CyclingReference("Cycling reference loading '{module}' from '{from}'"),
+    DependencyNotCompiled("Module '{module}' not compiled, dependency '{dependency}' has errors")
 }
 
 fun interface ModuleExecutable {
@@ -44,44 +65,107 @@ class Module(
     val name: String,
     val info: ModuleInfo,
     private val loader: LoadIrModuleFn,
-    private val sources: SourceLoader
+    private val sources: SourceLoader,
+    private val decodePool: ForkJoinPool? = null,
+    private val internStrings: Boolean = false
 ) {
     val documentation: DocModule by lazy {
-        sources.binaryLoad(name.toModulePath("ksd"))!!
-            .bufferView {
-                it.readDocModule()
-            }
+        sources.binaryView(name.toModulePath("ksd")) {
+            it.readDocModule()
+        }!!
     }
 
     val irModule: IrModule by lazy {
-        sources.binaryLoad(name.toModulePath("ksc"))!!
-            .bufferView {
-                it.readIrModule(loader)
-            }
+        sources.binaryBuffer(name.toModulePath("ksc"))!!
+            .readIrModule(loader, decodePool, intern = internStrings)
+    }
+
+    /**
+     * Ir with the source locations, for modules compiled in release mode the locations are
+     * loaded from the `.ksl` file the first time they are requested, e.g. to report an error
+     */
+    val sourceMappedIrModule: IrModule by lazy {
+        sources.binaryBuffer(name.toModulePath("ksc"))!!
+            .readIrModule(loader, decodePool, lazyLocationTable {
+                sources.binaryBuffer(name.toModulePath("ksl"))?.readLocationTable()
+            }, internStrings)
     }
 
     val executable: ModuleExecutable by lazy {
-        sources.binaryLoad(name.toModulePath("ksc"))!!
-            .bufferView {
-                IrModuleExecutable(it.readIrModule(loader))
-            }
+        IrModuleExecutable(irModule) { sourceMappedIrModule }
     }
 }
 
+/**
+ * Key of a module in the cache, the version is the hash of the source used to compile it
+ * or empty for modules without build state (e.g. libraries)
+ */
+data class ModuleKey(
+    val name: String,
+    val version: String
+)
+
+typealias ModuleCache = LruCache<ModuleKey, Module>
+
+fun moduleCacheOf(maxModules: Long = 512): ModuleCache = lruCacheOf(maxModules)
+
 interface SourceLoader {
     fun binaryLoad(path: String): InputStream?
+
+    /**
+     * Decode a binary, the view is valid only inside the action.
+     * Loaders backed by files can override it to avoid copying the binary
+     */
+    fun <T> binaryView(path: String, action: (BufferView) -> T): T? =
+        binaryLoad(path)?.use { it.bufferView(action) }
+
+    /**
+     * Binary view that stays valid while it is referenced, for binaries decoded on demand
+     */
+    fun binaryBuffer(path: String): BufferView? =
+        binaryLoad(path)?.use { it.readBytes() }?.bufferView()
+
     fun sourceLoad(path: String): Reader?
     fun outputStream(path: String, action: (OutputStream) -> Unit)
+
+    /**
+     * Channel to write an artifact, loaders backed by files give a seekable channel
+     * so the artifact sections are written as soon as they are encoded
+     */
+    fun channel(path: String, action: (WritableByteChannel) -> Unit) =
+        outputStream(path) { action(Channels.newChannel(it)) }
 }
 
+/**
+ * When a decode pool is provided the binaries of the modules are decoded in parallel on it,
+ * useful for very large modules. The encoding is used to write the code (`.ksc`) of the compiled modules,
+ * with [Encoding.Release] the locations are written to a `.ksl` file.
+ * With internStrings the names decoded from the binaries are interned, so the names shared by many modules
+ * are kept once
+ */
 class ModuleLoader(
     private val sources: SourceLoader,
-    private val preludeModule: ModuleInfo
+    private val preludeModule: ModuleInfo,
+    val cache: ModuleCache = moduleCacheOf(),
+    private val decodePool: ForkJoinPool? = null,
+    private val encoding: Encoding = Encoding.Fixed,
+    private val internStrings: Boolean = false
 ) {
     private val cyclingRefs = CyclingReferences()
+    private val sourceHashes = ConcurrentHashMap<String, String>()
+    // hash of the source of the modules verified up-to-date
+    private val verified = ConcurrentHashMap<String, String>()
+    private val checking = ThreadLocal.withInitial { mutableSetOf<String>() }
 
-    private fun InputStream.readModuleInfo(name: String, context: String): ErrorsOrModule =
-        Either.Right(Module(name, bufferView(BufferView::readModuleInfo), loader(context), sources))
+    private fun BufferView.readModule(name: String): Module =
+        Module(
+            name,
+            readModuleInfo(pool = decodePool, intern = internStrings),
+            loader(name),
+            sources,
+            decodePool,
+            internStrings
+        )
 
     private fun SourceLoader.write(path: String, action: (stream: OutputStream) -> Unit) {
         outputStream(path, action)
@@ -95,40 +179,159 @@ class ModuleLoader(
         )
     }
 
-    private fun Reader.codeModule(context: String, preludeModule: ModuleInfo): ErrorsOrModule =
-        this.parseModule(context, true)
+    private fun ModuleNode.codeModule(context: String, preludeModule: ModuleInfo): ErrorsOrModule =
+        toCodeModule(preludeModule, moduleInfoLoader).let { codeModule ->
+            val loadFn = loader(context)
+            if (codeModule.errors.isEmpty()) {
+                sources.channel(codeModule.name.toModulePath("ksd")) { channel ->
+                    toDocModule(codeModule.module)
+                        .writeTo(channel)
+                }
+                val previousInterface = interfaceHash(codeModule.name)
+                sources.channel(codeModule.name.toModulePath("ksm")) { channel ->
+                    codeModule.module.writeTo(channel)
+                }
+                if (interfaceHash(codeModule.name) != previousInterface) verified.clear()
+                val locations = if (encoding == Encoding.Release) LocationTableBuilder() else null
+                sources.channel(codeModule.name.toModulePath("ksc")) { channel ->
+                    codeModule.toIrModule(loadFn).writeTo(channel, encoding, locations)
+                }
+                if (locations != null) {
+                    sources.channel(codeModule.name.toModulePath("ksl")) { channel ->
+                        locations.writeTo(channel)
+                    }
+                }
+                sources.write(codeModule.name.toModulePath("ksb")) { stream ->
+                    BuildState(
+                        sourceHashes[context] ?: "",
+                        codeModule.module.dependencies.values.associateWith(::interfaceHash)
+                    ).writeTo(stream)
+                }
+                verified[context] = sourceHashes[context] ?: ""
+                Either.Right(Module(codeModule.name, codeModule.module, loadFn, sources, decodePool, internStrings))
+            } else Either.Left(codeModule.errors)
+        }
+
+    private fun String.parseSource(context: String): Either<List<Error>, ModuleNode> =
+        also { sourceHashes[context] = it.contentHash() }
+            .parseModule(context, true)
             .mapLeft {
                 listOf(it.error)
-            }.flatMap {
-                it.toCodeModule(preludeModule, moduleInfoLoader).let { codeModule ->
-                    val loadFn = loader(context)
-                    if (codeModule.errors.isEmpty()) {
-                        sources.write(codeModule.name.toModulePath("ksd")) { stream ->
-                            it.toDocModule(codeModule.module)
-                                .writeTo(stream)
-                        }
-                        sources.write(codeModule.name.toModulePath("ksm")) { stream ->
-                            codeModule.module.writeTo(stream)
-                        }
-                        sources.write(codeModule.name.toModulePath("ksc")) { stream ->
-                            codeModule.toIrModule(loadFn).writeTo(stream)
-                        }
-                        Either.Right(Module(codeModule.name, codeModule.module, loadFn, sources))
-                    } else Either.Left(codeModule.errors)
-                }
             }
 
+    private fun String.codeModule(context: String, preludeModule: ModuleInfo): ErrorsOrModule =
+        parseSource(context).flatMap {
+            it.codeModule(context, preludeModule)
+        }
+
+    private val String.context: String
+        get() = toModulePath("ks").let { it.substring(0, it.length - 3) }
+
+    private fun readSource(name: String): String? =
+        sources.sourceLoad(name.toModulePath("ks"))?.use { it.readText() }
+
+    private fun buildState(name: String): BuildState? =
+        sources.binaryLoad(name.toModulePath("ksb"))?.use { it.readBuildState() }
+
+    /**
+     * Binaries that can only be viewed (e.g. the modules of a bundle) are hashed by their sections table
+     */
+    private fun interfaceHash(name: String): String =
+        name.toModulePath("ksm").let { path ->
+            sources.binaryLoad(path)?.use { it.contentHash() }
+                ?: sources.binaryView(path) { it.sectionsHash(ArtifactKind.Module) }
+                ?: ""
+        }
+
+    /**
+     * Checks the header and checksums of the module artifacts, a corrupted or
+     * outdated artifact makes the module compile again. The locations (`.ksl`) are checked when they exist,
+     * only the modules compiled in release mode have them
+     */
+    private fun validArtifacts(name: String): Boolean =
+        artifactKinds.all { (extension, kind) ->
+            sources.binaryView(name.toModulePath(extension)) { it.isValidArtifact(kind) } == true
+        } && sources.binaryView(name.toModulePath("ksl")) { it.isValidArtifact(ArtifactKind.Locations) } != false
+
+    /**
+     * A module is up-to-date when its source and the interface of its dependencies
+     * didn't change since it was compiled and its artifacts are valid, modules without source are always up-to-date
+     */
+    private fun checkBuildState(name: String, context: String): Boolean {
+        val source = readSource(name) ?: return true
+        val state = buildState(name) ?: return false
+        if (state.source != source.contentHash() || !validArtifacts(name)) return false
+        if (!checking.get().add(context)) return true
+        try {
+            return state.dependencies.all { (dependency, hash) ->
+                load(dependency, name).isRight && interfaceHash(dependency) == hash
+            }
+        } finally {
+            checking.get().remove(context)
+        }
+    }
+
+    /**
+     * The version is the source hash the module was verified or compiled with,
+     * so an edited module gets a new key
+     */
+    private fun moduleKey(name: String): ModuleKey =
+        ModuleKey(name, verified[name.context] ?: buildState(name)?.source ?: "")
+
+    private fun ErrorsOrModule.cached(name: String): ErrorsOrModule =
+        map { module ->
+            module.also { cache.put(moduleKey(name), it) }
+        }
+
+    /**
+     * A module stays verified while its source doesn't change,
+     * when the interface of a compiled module changes the other modules are verified again
+     */
+    private fun upToDate(name: String): Boolean =
+        name.context.let { context ->
+            val hash = readSource(name)?.contentHash() ?: ""
+            verified[context] == hash || checkBuildState(name, context).also {
+                if (it) verified[context] = hash
+            }
+        }
+
+    /**
+     * Returns the dependencies recorded in the build state when the module is compiled
+     * and its source didn't change, otherwise null
+     */
+    internal fun unchangedDependencies(name: String): List<String>? =
+        if (sources.binaryView(name.toModulePath("ksm")) { true } != true) null
+        else buildState(name)?.let { state ->
+            if (state.source == readSource(name)?.contentHash() && validArtifacts(name)) state.dependencies.keys.toList()
+            else null
+        }
+
+    /**
+     * Parse the source of a module, returns null when the source doesn't exist
+     */
+    internal fun parse(name: String): Either<List<Error>, ModuleNode>? =
+        readSource(name)?.parseSource(name.context)
+
+    /**
+     * Compile an already parsed module, the dependencies must be compiled before
+     */
+    internal fun compile(name: String, node: ModuleNode): ErrorsOrModule =
+        node.codeModule(name.context, preludeModule)
+            .cached(name)
+
     fun load(name: String, from: String): ErrorsOrModule =
-        sources.binaryLoad(name.toModulePath("ksm"))?.readModuleInfo(name, from)
+        (if (upToDate(name)) cache.get(moduleKey(name)) {
+            sources.binaryView(name.toModulePath("ksm")) { it.readModule(name) }
+        }?.let { Either.Right(it) } else null)
             ?: name.toModulePath("ks").let {
                 val dependencies = cyclingRefs.loading(name, from)
                 if (dependencies.isEmpty()) {
-                    sources.sourceLoad(it)
-                        ?.codeModule(it.substring(0, it.length - 3), preludeModule)
+                    readSource(name)
+                        ?.codeModule(name.context, preludeModule)
                         ?.map { module ->
                             cyclingRefs.loaded(name)
                             module
-                        }
+                        }?.cached(name)
                 } else Either.Left(
                     listOf(
                         ModuleLoaderErrorCode.CyclingReference.new(
@@ -0,0 +1,76 @@
+package org.ksharp.compiler.polyglot
+
+import org.graalvm.polyglot.Context
+import org.graalvm.polyglot.Engine
+import org.graalvm.polyglot.Source
+import org.graalvm.polyglot.Value
+import org.graalvm.polyglot.io.ByteSequence
+import org.ksharp.ir.truffle.KSharpLanguage
+import java.nio.file.Files
+import java.nio.file.Path
+import kotlin.io.path.Path
+
+private val engineOptions by lazy {
+    Engine.create().use { it.options }
+}
+
+/**
+ * Engine options only exist when the runtime supports them,
+ * e.g. the compilation options are not available on the fallback (interpreter only) runtime
+ */
+private fun Context.Builder.engineOption(name: String, value: String): Context.Builder =
+    if (engineOptions.get(name) != null) option(name, value)
+    else this
+
+fun ksharpContext(binaries: Path, compilation: Boolean = true): Context =
+    Context.newBuilder(KSharpLanguage.ID)
+        .allowIO(true)
+        .option("${KSharpLanguage.ID}.ModulePath", binaries.toAbsolutePath().toString())
+        .engineOption("engine.WarnInterpreterOnly", "false")
+        .engineOption("engine.Compilation", compilation.toString())
+        .build()
+
+fun Context.evalModule(binaries: Path, name: String): Value {
+    val path = "${name.replace('.', '/')}.ksc"
+    val bytes = Files.readAllBytes(binaries.resolve(path))
+    return eval(
+        Source.newBuilder(KSharpLanguage.ID, ByteSequence.create(bytes), path)
+            .mimeType(KSharpLanguage.MIME_TYPE)
+            .build()
+    )
+}
+
+private fun String.toArgument(): Any =
+    toLongOrNull() ?: toDoubleOrNull() ?: this
+
+/**
+ * Usage: binaries module function [arguments...] [--interpreter] [--iterations=N]
+ *
+ * `--interpreter` disables the runtime compilation, running it with and without the flag
+ * compares the interpreter only and compiled throughput
+ */
+fun main(args: Array<String>) {
+    val (flags, positional) = args.partition { it.startsWith("--") }
+    if (positional.size < 3) {
+        println("Usage: binaries module function [arguments...] [--interpreter] [--iterations=N]")
+        return
+    }
+    val compilation = !flags.contains("--interpreter")
+    val iterations = flags.firstOrNull { it.startsWith("--iterations=") }
+        ?.substringAfter("=")
+        ?.toInt() ?: 1
+    val binaries = Path(positional[0])
+    val arguments = positional.drop(3).map { it.toArgument() }.toTypedArray()
+    ksharpContext(binaries, compilation).use { context ->
+        val function = context.evalModule(binaries, positional[1]).getMember(positional[2])
+        var result: Value? = null
+        val start = System.nanoTime()
+        repeat(iterations) {
+            result = function.execute(*arguments)
+        }
+        val elapsed = System.nanoTime() - start
+        println("Result: $result")
+        println("Mode: ${if (compilation) "compiled" else "interpreter"}")
+        println("Iterations: $iterations in ${elapsed / 1_000_000} ms (${iterations * 1_000_000_000.0 / elapsed} ops/s)")
+    }
+}
@@ -0,0 +1,129 @@
+package org.ksharp.compiler
+
+import io.kotest.core.spec.style.StringSpec
+import io.kotest.engine.spec.tempdir
+import io.kotest.matchers.booleans.shouldBeTrue
+import io.kotest.matchers.collections.shouldBeEmpty
+import io.kotest.matchers.shouldBe
+import org.ksharp.common.new
+import org.ksharp.compiler.loader.BuildScheduler
+import org.ksharp.compiler.loader.DirectorySourceLoader
+import org.ksharp.compiler.loader.ModuleLoader
+import org.ksharp.compiler.loader.ModuleLoaderErrorCode
+import org.ksharp.compiler.loader.SourceLoader
+import org.ksharp.module.prelude.preludeModule
+import org.ksharp.test.shouldBeLeft
+import org.ksharp.test.shouldBeRight
+import java.io.File
+import java.io.OutputStream
+import java.nio.channels.WritableByteChannel
+import java.nio.file.Files
+import java.util.concurrent.Executors
+
+private fun SourceLoader.recordingWrites(writes: MutableList<String>): SourceLoader {
+    val directory = this
+    return object : SourceLoader by directory {
+        override fun outputStream(path: String, action: (OutputStream) -> Unit) {
+            synchronized(writes) { writes.add(path) }
+            directory.outputStream(path, action)
+        }
+
+        override fun channel(path: String, action: (WritableByteChannel) -> Unit) {
+            synchronized(writes) { writes.add(path) }
+            directory.channel(path, action)
+        }
+    }
+}
+
+class BuildSchedulerTest : StringSpec({
+    "Compile a module and its imports" {
+        val binaries = tempdir().toPath()
+        val sources = DirectorySourceLoader(
+            File("src/test/resources").absoluteFile.toPath(),
+            binaries
+        )
+        val executor = Executors.newFixedThreadPool(4)
+        try {
+            val result = BuildScheduler(ModuleLoader(sources, preludeModule), executor)
+                .build("twenty", "ten")
+            result.keys.shouldBe(setOf("twenty", "numbers", "ten"))
+            result.getValue("twenty")
+                .shouldBeRight()
+                .map { it.executable.execute("twenty/0").shouldBe(20L) }
+            Files.exists(binaries.resolve("numbers.ksm")).shouldBeTrue()
+            Files.exists(binaries.resolve("ten.ksc")).shouldBeTrue()
+        } finally {
+            executor.shutdown()
+        }
+    }
+    "Unchanged modules are not compiled again" {
+        val binaries = tempdir().toPath()
+        val writes = mutableListOf<String>()
+        val sources = DirectorySourceLoader(
+            File("src/test/resources").absoluteFile.toPath(),
+            binaries
+        ).recordingWrites(writes)
+        BuildScheduler(ModuleLoader(sources, preludeModule))
+            .build("numbers")
+            .keys.shouldBe(setOf("numbers"))
+        BuildScheduler(ModuleLoader(sources, preludeModule))
+            .build("twenty")
+            .keys.shouldBe(setOf("twenty", "numbers"))
+        writes.filter { it.endsWith(".ksm") }.shouldBe(listOf("numbers.ksm", "twenty.ksm"))
+        writes.clear()
+        BuildScheduler(ModuleLoader(sources, preludeModule))
+            .build("twenty")
+            .getValue("twenty")
+            .shouldBeRight()
+            .map { it.executable.execute("twenty/0").shouldBe(20L) }
+        writes.shouldBeEmpty()
+    }
+    "Changing a function body doesn't compile the dependents again" {
+        val root = tempdir().toPath()
+        val binaries = tempdir().toPath()
+        Files.writeString(root.resolve("numbers.ks"), "twice a = a * 2\n")
+        Files.writeString(root.resolve("twenty.ks"), "import numbers as n\n\ntwenty = n.twice 10\n")
+        val writes = mutableListOf<String>()
+        val sources = DirectorySourceLoader(root, binaries).recordingWrites(writes)
+        BuildScheduler(ModuleLoader(sources, preludeModule)).build("twenty")
+        writes.clear()
+        Files.writeString(root.resolve("numbers.ks"), "twice a = 2 * a\n")
+        BuildScheduler(ModuleLoader(sources, preludeModule))
+            .build("twenty")
+            .getValue("twenty")
+            .shouldBeRight()
+            .map { it.executable.execute("twenty/0").shouldBe(20L) }
+        writes.filter { it.endsWith(".ksm") }.shouldBe(listOf("numbers.ksm"))
+        writes.clear()
+        Files.writeString(root.resolve("numbers.ks"), "twice a = 2 * a\n\nthrice a = a * 3\n")
+        BuildScheduler(ModuleLoader(sources, preludeModule)).build("twenty")
+        writes.filter { it.endsWith(".ksm") }.shouldBe(listOf("numbers.ksm", "twenty.ksm"))
+    }
+    "Cycling imports" {
+        val binaries = tempdir().toPath()
+        val sources = DirectorySourceLoader(
+            File("src/test/resources").absoluteFile.toPath(),
+            binaries
+        )
+        val result = BuildScheduler(ModuleLoader(sources, preludeModule))
+            .build("cyclea")
+        result.getValue("cyclea")
+            .shouldBeLeft(
+                listOf(
+                    ModuleLoaderErrorCode.CyclingReference.new(
+                        "module" to "cyclea",
+                        "from" to "cycleb"
+                    )
+                )
+            )
+        result.getValue("cycleb")
+            .shouldBeLeft(
+                listOf(
+                    ModuleLoaderErrorCode.DependencyNotCompiled.new(
+                        "module" to "cycleb",
+                        "dependency" to "cyclea"
+                    )
+                )
+            )
+    }
+})
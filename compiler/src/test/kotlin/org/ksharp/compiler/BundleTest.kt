@@ -0,0 +1,63 @@
+package org.ksharp.compiler
+
+import io.kotest.assertions.throwables.shouldThrow
+import io.kotest.core.spec.style.StringSpec
+import io.kotest.engine.spec.tempdir
+import io.kotest.matchers.booleans.shouldBeTrue
+import io.kotest.matchers.collections.shouldContain
+import io.kotest.matchers.nulls.shouldBeNull
+import io.kotest.matchers.nulls.shouldNotBeNull
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.types.shouldBeInstanceOf
+import org.ksharp.common.io.ArtifactKind
+import org.ksharp.common.io.artifactSections
+import org.ksharp.common.io.bufferView
+import org.ksharp.common.io.isValidArtifact
+import org.ksharp.common.io.mappedBufferView
+import org.ksharp.compiler.loader.*
+import org.ksharp.module.prelude.preludeModule
+import org.ksharp.test.shouldBeRight
+import java.io.File
+import java.nio.file.Files
+
+class BundleTest : StringSpec({
+    "Load modules from a bundle" {
+        val binaries = tempdir().toPath()
+        val sources = DirectorySourceLoader(File("src/test/resources").absoluteFile.toPath(), binaries)
+        val modules = BuildScheduler(ModuleLoader(sources, preludeModule))
+            .build("numbers", "twenty")
+            .values
+            .map { it.shouldBeRight().value }
+        val bundle = binaries.resolve("library.ksa")
+        Files.newOutputStream(bundle).use {
+            modules.writeBundle(it)
+        }
+        bundle.mappedBufferView { it.isValidArtifact(ArtifactKind.Bundle) }.shouldBeTrue()
+        val loader = bundle.bundleSourceLoader()
+        loader.shouldBeInstanceOf<BundleSourceLoader>()
+            .paths.shouldBe(
+                setOf(
+                    "numbers.ksm", "numbers.ksc", "numbers.ksd",
+                    "twenty.ksm", "twenty.ksc", "twenty.ksd"
+                )
+            )
+        loader.binaryLoad("ten.ksm").shouldBeNull()
+        loader.binaryLoad("twenty.ksm").shouldBeNull()
+        loader.binaryLoad("twenty.ksc").shouldBeNull()
+        loader.binaryLoad("twenty.ksd").shouldNotBeNull().use { it.readBytes() }.bufferView()
+            .isValidArtifact(ArtifactKind.Doc).shouldBeTrue()
+        loader.sourceLoad("twenty.ks").shouldBeNull()
+        shouldThrow<UnsupportedOperationException> {
+            loader.outputStream("twenty.ksm") {}
+        }
+        loader.binaryView("twenty.ksm") { it.artifactSections(ArtifactKind.Module)!!.size }.shouldBe(4)
+        loader.binaryView("twenty.ksc") { it.artifactSections(ArtifactKind.Code)!!.size }.shouldBe(1)
+        ModuleLoader(loader, preludeModule)
+            .load("twenty", "")
+            .shouldBeRight()
+            .map {
+                it.info.functions.keys.shouldContain("twenty/0")
+                it.executable.execute("twenty/0").shouldBe(20L)
+            }
+    }
+})
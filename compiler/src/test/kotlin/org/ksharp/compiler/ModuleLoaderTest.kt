@@ -1,15 +1,25 @@
 package org.ksharp.compiler
 
+import io.kotest.assertions.throwables.shouldThrow
 import io.kotest.core.spec.style.StringSpec
 import io.kotest.engine.spec.tempdir
+import io.kotest.matchers.booleans.shouldBeFalse
 import io.kotest.matchers.booleans.shouldBeTrue
 import io.kotest.matchers.collections.shouldBeEmpty
 import io.kotest.matchers.maps.shouldBeEmpty
 import io.kotest.matchers.nulls.shouldNotBeNull
 import io.kotest.matchers.shouldBe
+import io.kotest.matchers.shouldNotBe
 import io.kotest.matchers.types.shouldBeInstanceOf
+import io.kotest.matchers.types.shouldBeSameInstanceAs
+import org.ksharp.common.Location
+import org.ksharp.common.io.ArtifactKind
+import org.ksharp.common.io.Encoding
+import org.ksharp.common.io.isValidArtifact
+import org.ksharp.common.io.mappedBufferView
 import org.ksharp.common.new
 import org.ksharp.compiler.loader.*
+import org.ksharp.ir.symbol
 import org.ksharp.module.ModuleInfo
 import org.ksharp.module.prelude.preludeModule
 import org.ksharp.test.shouldBeLeft
@@ -80,4 +90,107 @@ class ModuleLoaderTest : StringSpec({
                 listOf(ModuleLoaderErrorCode.ModuleNotFound.new("name" to "ten2"))
             )
     }
+    "Compile a module again when the source changed" {
+        val root = tempdir().toPath()
+        val output = tempdir().toPath()
+        val directory = DirectorySourceLoader(root, output)
+        Files.writeString(root.resolve("number.ks"), "number = 10\n")
+        ModuleLoader(directory, preludeModule)
+            .load("number", "")
+            .shouldBeRight()
+            .map { it.executable.execute("number/0").shouldBe(10L) }
+        Files.exists(output.resolve("number.ksb")).shouldBeTrue()
+        Files.writeString(root.resolve("number.ks"), "number = 20\n")
+        ModuleLoader(directory, preludeModule)
+            .load("number", "")
+            .shouldBeRight()
+            .map { it.executable.execute("number/0").shouldBe(20L) }
+    }
+    "Compile a module again when the source changed in the same loader" {
+        val root = tempdir().toPath()
+        val output = tempdir().toPath()
+        val loader = ModuleLoader(DirectorySourceLoader(root, output), preludeModule)
+        Files.writeString(root.resolve("number.ks"), "number = 10\n")
+        loader.load("number", "")
+            .shouldBeRight()
+            .map { it.executable.execute("number/0").shouldBe(10L) }
+        Files.writeString(root.resolve("number.ks"), "number = 20\n")
+        loader.load("number", "")
+            .shouldBeRight()
+            .map { it.executable.execute("number/0").shouldBe(20L) }
+    }
+    "Compile a module again when an artifact is corrupted" {
+        val root = tempdir().toPath()
+        val output = tempdir().toPath()
+        val directory = DirectorySourceLoader(root, output)
+        Files.writeString(root.resolve("number.ks"), "number = 10\n")
+        ModuleLoader(directory, preludeModule)
+            .load("number", "")
+            .shouldBeRight()
+        val code = output.resolve("number.ksc")
+        val bytes = Files.readAllBytes(code)
+        bytes[bytes.size - 1] = (bytes[bytes.size - 1] + 1).toByte()
+        Files.write(code, bytes)
+        code.mappedBufferView { it.isValidArtifact(ArtifactKind.Code) }.shouldBeFalse()
+        ModuleLoader(directory, preludeModule)
+            .load("number", "")
+            .shouldBeRight()
+            .map { it.executable.execute("number/0").shouldBe(10L) }
+        code.mappedBufferView { it.isValidArtifact(ArtifactKind.Code) }.shouldBeTrue()
+    }
+    "Compile a module in release mode" {
+        val root = tempdir().toPath()
+        val output = tempdir().toPath()
+        Files.writeString(root.resolve("number.ks"), "number = 10\n")
+        ModuleLoader(DirectorySourceLoader(root, output), preludeModule, encoding = Encoding.Release)
+            .load("number", "")
+            .shouldBeRight()
+            .map {
+                it.executable.execute("number/0").shouldBe(10L)
+                it.irModule.symbols.symbol("number/0")!!.location.shouldBe(Location.NoProvided)
+                it.sourceMappedIrModule.symbols.symbol("number/0")!!.location.shouldNotBe(Location.NoProvided)
+            }
+        Files.exists(output.resolve("number.ksl")).shouldBeTrue()
+    }
+    "Compile a module again when the locations are corrupted" {
+        val root = tempdir().toPath()
+        val output = tempdir().toPath()
+        val directory = DirectorySourceLoader(root, output)
+        Files.writeString(root.resolve("number.ks"), "number = 10\n")
+        ModuleLoader(directory, preludeModule, encoding = Encoding.Release)
+            .load("number", "")
+            .shouldBeRight()
+        val locations = output.resolve("number.ksl")
+        val bytes = Files.readAllBytes(locations)
+        bytes[bytes.size - 1] = (bytes[bytes.size - 1] + 1).toByte()
+        Files.write(locations, bytes)
+        ModuleLoader(directory, preludeModule, encoding = Encoding.Release)
+            .load("number", "")
+            .shouldBeRight()
+        locations.mappedBufferView { it.isValidArtifact(ArtifactKind.Locations) }.shouldBeTrue()
+    }
+    "Report the source location of a failing function compiled in release mode" {
+        val root = tempdir().toPath()
+        val output = tempdir().toPath()
+        Files.writeString(root.resolve("number.ks"), "number = 10 / 0\n")
+        ModuleLoader(DirectorySourceLoader(root, output), preludeModule, encoding = Encoding.Release)
+            .load("number", "")
+            .shouldBeRight()
+            .map {
+                val location = shouldThrow<ArithmeticException> {
+                    it.executable.execute("number/0")
+                }.executionSite.shouldNotBeNull().location
+                location.shouldNotBe(Location.NoProvided)
+                location.shouldNotBe(it.sourceMappedIrModule.symbols.symbol("number/0")!!.location)
+            }
+    }
+    "Share the decoded modules through the cache" {
+        val cache = moduleCacheOf(8)
+        val loader = ModuleLoader(sources, preludeModule, cache)
+        val module = loader.load("ten", "").valueOrNull.shouldNotBeNull()
+        loader.load("ten", "").valueOrNull.shouldBeSameInstanceAs(module)
+        module.executable.execute("ten/0").shouldBe(10L)
+        cache.hits.shouldBe(1)
+        cache.size.shouldBe(1)
+    }
 })
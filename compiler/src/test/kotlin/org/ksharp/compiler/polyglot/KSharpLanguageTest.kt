@@ -0,0 +1,29 @@
+package org.ksharp.compiler.polyglot
+
+import io.kotest.core.spec.style.StringSpec
+import io.kotest.engine.spec.tempdir
+import io.kotest.matchers.shouldBe
+import org.ksharp.compiler.loader.DirectorySourceLoader
+import org.ksharp.compiler.loader.ModuleLoader
+import org.ksharp.module.prelude.preludeModule
+import org.ksharp.test.shouldBeRight
+import java.io.File
+
+class KSharpLanguageTest : StringSpec({
+    val binaries = tempdir().toPath()
+    val sources = DirectorySourceLoader(
+        File("src/test/resources").absoluteFile.toPath(),
+        binaries
+    )
+
+    "Evaluate a compiled module through the polyglot context" {
+        ModuleLoader(sources, preludeModule).load("ten", "").shouldBeRight()
+        listOf(true, false).forEach { compilation ->
+            ksharpContext(binaries, compilation).use { context ->
+                val module = context.evalModule(binaries, "ten")
+                module.hasMember("ten/0").shouldBe(true)
+                module.getMember("ten/0").execute().asLong().shouldBe(10L)
+            }
+        }
+    }
+})
@@ -1,9 +1,14 @@
 package org.ksharp.doc
 
+import org.ksharp.common.io.ArtifactKind
 import org.ksharp.common.io.BufferView
 import org.ksharp.common.io.BufferWriter
+import org.ksharp.common.io.artifact
+import org.ksharp.common.io.artifactOf
 import org.ksharp.common.io.newBufferWriter
 import java.io.OutputStream
+import java.nio.channels.Channels
+import java.nio.channels.WritableByteChannel
 
 private fun readString(buffer: BufferView, offset: Int): Pair<String, Int> {
     val size = buffer.readInt(offset)
@@ -89,13 +94,19 @@ private fun DocModule.writeTo(buffer: BufferWriter) {
     abstractions.writeTo(buffer)
 }
 
-fun DocModule.writeTo(output: OutputStream) {
+fun DocModule.writeTo(channel: WritableByteChannel) {
     val buffer = newBufferWriter()
     writeTo(buffer)
-    buffer.transferTo(output)
+    artifactOf(ArtifactKind.Doc, channel) {
+        it.section(buffer)
+    }
 }
 
-fun BufferView.readDocModule(): DocModule {
+fun DocModule.writeTo(output: OutputStream) = writeTo(Channels.newChannel(output))
+
+fun BufferView.readDocModule(): DocModule = artifact(ArtifactKind.Doc).readDocModuleSection()
+
+private fun BufferView.readDocModuleSection(): DocModule {
     val typeSize = readInt(0)
     var offset = 4
     val types = mutableListOf<Type>()
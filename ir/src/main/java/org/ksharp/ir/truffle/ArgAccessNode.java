@@ -1,26 +1,26 @@
 package org.ksharp.ir.truffle;
 
 import com.oracle.truffle.api.frame.VirtualFrame;
-import org.ksharp.ir.KValue;
-
-import java.util.Map;
+import org.ksharp.ir.truffle.variable.BaseCaptureAccessNode;
+import org.ksharp.ir.truffle.variable.BaseCaptureAccessNodeGen;
 
 public class ArgAccessNode extends KSharpNode {
 
     private final int index;
-    private final String captureName;
 
-    public ArgAccessNode(int index, String captureName) {
+    @SuppressWarnings("FieldMayBeFinal")
+    @Child
+    private BaseCaptureAccessNode captureNode;
+
+    public ArgAccessNode(int index, int captureIndex) {
         this.index = index;
-        this.captureName = captureName;
+        this.captureNode = captureIndex < 0 ? null : BaseCaptureAccessNodeGen.create(captureIndex);
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Object execute(VirtualFrame frame) {
-        if (captureName != null) {
-            var context = (Map<String, Object>) KValue.value(frame.getObject(0));
-            return context.get(captureName);
+        if (captureNode != null) {
+            return captureNode.execute(frame);
         }
         return frame.getArguments()[index];
     }
@@ -0,0 +1,29 @@
+package org.ksharp.ir.truffle;
+
+import com.oracle.truffle.api.TruffleLanguage;
+import com.oracle.truffle.api.frame.VirtualFrame;
+
+public class ClosureFunctionNode extends FunctionNode {
+
+    private final LambdaNode lambda;
+
+    public ClosureFunctionNode(TruffleLanguage<?> language, int slots, KSharpNode expr, LambdaNode lambda) {
+        super(language, slots, expr);
+        this.lambda = lambda;
+    }
+
+    /**
+     * Lambda that creates the closures of this root
+     */
+    public LambdaNode lambda() {
+        return lambda;
+    }
+
+    @Override
+    public Object execute(VirtualFrame frame) {
+        var arguments = frame.getArguments();
+        // the captured environment travels as the last argument, see ClosureObject
+        frame.setObject(0, arguments[arguments.length - 1]);
+        return super.execute(frame);
+    }
+}
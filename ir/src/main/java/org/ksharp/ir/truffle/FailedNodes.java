@@ -0,0 +1,50 @@
+package org.ksharp.ir.truffle;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.nodes.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Nodes where an execution failed, the failing node followed by the call sites of the enclosing frames.
+ * It travels as a suppressed exception of the failure, so the failure keeps its type
+ */
+public final class FailedNodes extends RuntimeException {
+
+    private final transient List<Node> nodes = new ArrayList<>();
+
+    private FailedNodes() {
+        super("Failed nodes", null, false, false);
+    }
+
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Only the innermost node of each frame is recorded
+     */
+    @TruffleBoundary
+    public static RuntimeException record(RuntimeException exception, Node node) {
+        var failed = of(exception);
+        if (failed == null) {
+            failed = new FailedNodes();
+            exception.addSuppressed(failed);
+        } else if (!failed.nodes.isEmpty()
+                && failed.nodes.get(failed.nodes.size() - 1).getRootNode() == node.getRootNode()) {
+            return exception;
+        }
+        failed.nodes.add(node);
+        return exception;
+    }
+
+    public static FailedNodes of(Throwable exception) {
+        for (var suppressed : exception.getSuppressed()) {
+            if (suppressed instanceof FailedNodes failed) {
+                return failed;
+            }
+        }
+        return null;
+    }
+}
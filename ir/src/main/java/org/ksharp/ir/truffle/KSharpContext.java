@@ -0,0 +1,83 @@
+package org.ksharp.ir.truffle;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.TruffleLanguage;
+import com.oracle.truffle.api.TruffleLanguage.ContextReference;
+import com.oracle.truffle.api.interop.TruffleObject;
+import com.oracle.truffle.api.nodes.Node;
+import com.oracle.truffle.api.nodes.RootNode;
+import com.oracle.truffle.api.strings.TruffleString;
+import org.ksharp.ir.BinaryIrModuleLoader;
+import org.ksharp.ir.IrModule;
+import org.ksharp.ir.KValue;
+import org.ksharp.ir.LoadIrModuleFn;
+import org.ksharp.ir.serializer.SerializersKt;
+import org.ksharp.ir.truffle.runtime.ModuleObject;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class KSharpContext {
+
+    private static final ContextReference<KSharpContext> REFERENCE = ContextReference.create(KSharpLanguage.class);
+
+    private final TruffleLanguage.Env env;
+    private final LoadIrModuleFn loader;
+    private final Map<RootNode, ModuleObject> modules = new ConcurrentHashMap<>();
+
+    public KSharpContext(KSharpLanguage language, TruffleLanguage.Env env) {
+        this.env = env;
+        this.loader = new BinaryIrModuleLoader(this::binaryLoad, language);
+    }
+
+    public static KSharpContext get(Node node) {
+        return REFERENCE.get(node);
+    }
+
+    private byte[] binaryLoad(String path) {
+        var modulePath = env.getOptions().get(KSharpLanguage.ModulePath);
+        if (modulePath.isEmpty()) {
+            return null;
+        }
+        var file = env.getPublicTruffleFile(modulePath).resolve(path);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            return file.readAllBytes();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Module evaluated by the root node, it is decoded the first time the root is executed in this context
+     */
+    public ModuleObject module(RootNode root, byte[] bytes) {
+        return modules.computeIfAbsent(root, key -> new ModuleObject(readIrModule(bytes)));
+    }
+
+    public IrModule readIrModule(byte[] bytes) {
+        return SerializersKt.readIrModule(bytes, loader, null, null, false);
+    }
+
+    @TruffleBoundary
+    public Object toInteropValue(Object value) {
+        var result = KValue.value(value);
+        if (result instanceof Boolean
+                || result instanceof Byte
+                || result instanceof Short
+                || result instanceof Integer
+                || result instanceof Long
+                || result instanceof Float
+                || result instanceof Double
+                || result instanceof Character
+                || result instanceof String
+                || result instanceof TruffleString
+                || result instanceof TruffleObject) {
+            return result;
+        }
+        return env.asGuestValue(result);
+    }
+}
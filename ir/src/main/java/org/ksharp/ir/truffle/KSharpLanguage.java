@@ -0,0 +1,39 @@
+package org.ksharp.ir.truffle;
+
+import com.oracle.truffle.api.CallTarget;
+import com.oracle.truffle.api.Option;
+import com.oracle.truffle.api.TruffleLanguage;
+import org.graalvm.options.OptionCategory;
+import org.graalvm.options.OptionDescriptors;
+import org.graalvm.options.OptionKey;
+import org.graalvm.options.OptionStability;
+
+@TruffleLanguage.Registration(
+        id = KSharpLanguage.ID,
+        name = "KSharp",
+        defaultMimeType = KSharpLanguage.MIME_TYPE,
+        byteMimeTypes = KSharpLanguage.MIME_TYPE
+)
+public final class KSharpLanguage extends TruffleLanguage<KSharpContext> {
+
+    public static final String ID = "ksharp";
+    public static final String MIME_TYPE = "application/x-ksharp-ir";
+
+    @Option(help = "Directory with the compiled modules (.ksm and .ksc)", category = OptionCategory.USER, stability = OptionStability.STABLE)
+    static final OptionKey<String> ModulePath = new OptionKey<>("");
+
+    @Override
+    protected KSharpContext createContext(Env env) {
+        return new KSharpContext(this, env);
+    }
+
+    @Override
+    protected OptionDescriptors getOptionDescriptors() {
+        return new KSharpLanguageOptionDescriptors();
+    }
+
+    @Override
+    protected CallTarget parse(ParsingRequest request) {
+        return new ModuleRootNode(this, request.getSource().getBytes().toByteArray()).getCallTarget();
+    }
+}
@@ -6,4 +6,11 @@ import com.oracle.truffle.api.nodes.Node;
 public abstract class KSharpNode extends Node {
     public abstract Object execute(VirtualFrame frame);
 
+    /**
+     * Records this node as the failing node, see {@link FailedNodes}
+     */
+    protected final RuntimeException failure(RuntimeException exception) {
+        return FailedNodes.record(exception, this);
+    }
+
 }
@@ -7,8 +7,15 @@ import com.oracle.truffle.api.nodes.RootNode;
 
 public abstract class KSharpRootNode extends RootNode {
 
+    private final TruffleLanguage<?> language;
+
     protected KSharpRootNode(TruffleLanguage<?> language, int slots) {
         super(language, createFrameDescriptor(slots));
+        this.language = language;
+    }
+
+    public TruffleLanguage<?> language() {
+        return language;
     }
 
     private static FrameDescriptor createFrameDescriptor(int slots) {
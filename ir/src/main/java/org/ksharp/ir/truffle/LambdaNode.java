@@ -1,35 +1,55 @@
 package org.ksharp.ir.truffle;
 
+import com.oracle.truffle.api.CompilerDirectives;
+import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
 import com.oracle.truffle.api.frame.VirtualFrame;
+import com.oracle.truffle.api.nodes.ExplodeLoop;
+import org.ksharp.ir.truffle.runtime.ClosureObject;
 import org.ksharp.ir.truffle.variable.CaptureVarNode;
 
-import java.util.HashMap;
-
 public class LambdaNode extends KSharpNode {
 
     @SuppressWarnings("FieldMayBeFinal")
     @Children
     private CaptureVarNode[] capturedContext;
 
-    @SuppressWarnings("FieldMayBeFinal")
-    @Child
-    private KSharpNode expr;
-
-    @SuppressWarnings("FieldMayBeFinal")
     private final int slots;
+    private final KSharpNode expr;
+
+    @CompilationFinal
+    private volatile ClosureFunctionNode function;
 
     public LambdaNode(int slots, CaptureVarNode[] capturedContext, KSharpNode expr) {
+        this.capturedContext = capturedContext;
         this.slots = slots;
         this.expr = expr;
-        this.capturedContext = capturedContext;
+    }
+
+    /**
+     * The closure root is created the first time the lambda is evaluated, with the language of the enclosing root
+     */
+    private ClosureFunctionNode function() {
+        if (function == null) {
+            CompilerDirectives.transferToInterpreterAndInvalidate();
+            createFunction();
+        }
+        return function;
+    }
+
+    private synchronized void createFunction() {
+        if (function == null) {
+            var language = getRootNode() instanceof KSharpRootNode root ? root.language() : null;
+            function = new ClosureFunctionNode(language, slots, expr, this);
+        }
     }
 
     @Override
+    @ExplodeLoop
     public Object execute(VirtualFrame frame) {
-        var context = new HashMap<String, Object>();
-        for (var entry : capturedContext) {
-            context.put(entry.getCaptureName(), entry.execute(frame));
+        var context = new Object[capturedContext.length];
+        for (int i = 0; i < capturedContext.length; i++) {
+            context[i] = capturedContext[i].execute(frame);
         }
-        return new FunctionNode(slots, context, expr);
+        return new ClosureObject(function().getCallTarget(), context);
     }
 }
@@ -0,0 +1,29 @@
+package org.ksharp.ir.truffle;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.frame.VirtualFrame;
+import com.oracle.truffle.api.nodes.RootNode;
+import org.ksharp.ir.truffle.runtime.ModuleObject;
+
+/**
+ * Decodes the module with the context executing the source, each context decodes it once
+ */
+final class ModuleRootNode extends RootNode {
+
+    private final byte[] code;
+
+    ModuleRootNode(KSharpLanguage language, byte[] code) {
+        super(language);
+        this.code = code;
+    }
+
+    @Override
+    public Object execute(VirtualFrame frame) {
+        return readModule();
+    }
+
+    @TruffleBoundary
+    private ModuleObject readModule() {
+        return KSharpContext.get(this).module(this, code);
+    }
+}
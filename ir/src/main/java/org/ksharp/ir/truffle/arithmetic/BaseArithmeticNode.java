@@ -18,7 +18,11 @@ public abstract class BaseArithmeticNode extends KSharpNode implements NumericOp
 
     @Override
     public Object execute(VirtualFrame frame) {
-        return numericNode.execute(frame);
+        try {
+            return numericNode.execute(frame);
+        } catch (RuntimeException e) {
+            throw failure(e);
+        }
     }
 
 }
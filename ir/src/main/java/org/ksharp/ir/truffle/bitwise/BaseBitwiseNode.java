@@ -18,7 +18,11 @@ public abstract class BaseBitwiseNode extends KSharpNode implements IntegerOpera
 
     @Override
     public Object execute(VirtualFrame frame) {
-        return integerNode.execute(frame);
+        try {
+            return integerNode.execute(frame);
+        } catch (RuntimeException e) {
+            throw failure(e);
+        }
     }
 
 }
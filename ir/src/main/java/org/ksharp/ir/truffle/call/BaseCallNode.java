@@ -20,7 +20,14 @@ public abstract class BaseCallNode extends KSharpNode {
     }
 
     public Pair<Type, Object[]> getArguments(VirtualFrame frame) {
-        var argumentValues = new Object[arguments.length];
+        return getArguments(frame, 0);
+    }
+
+    /**
+     * The reserved slots are left empty at the end of the arguments, to be filled by the caller
+     */
+    protected Pair<Type, Object[]> getArguments(VirtualFrame frame, int reserved) {
+        var argumentValues = new Object[arguments.length + reserved];
         Type firstArgumentType = null;
         for (int i = 0; i < arguments.length; i++) {
             var argument = arguments[i].execute(frame);
@@ -35,5 +42,4 @@ public abstract class BaseCallNode extends KSharpNode {
         return new Pair<>(firstArgumentType, argumentValues);
     }
 
-
 }
@@ -26,13 +26,17 @@ public abstract class CallNode extends BaseCallNode {
     @Override
     public Object execute(VirtualFrame frame) {
         var argumentValues = getArguments(frame);
-        if (functionTarget == null) {
-            var rootNode = getCallTarget(argumentValues.getFirst());
-            functionTarget = new FunctionObject(rootNode);
+        try {
+            if (functionTarget == null) {
+                var rootNode = getCallTarget(argumentValues.getFirst());
+                functionTarget = new FunctionObject(rootNode);
+            }
+            return KValue.wrap(
+                    dispatchNode.executeDispatch(functionTarget, argumentValues.getSecond()),
+                    returnType
+            );
+        } catch (RuntimeException e) {
+            throw failure(e);
         }
-        return KValue.wrap(
-                dispatchNode.executeDispatch(functionTarget, argumentValues.getSecond()),
-                returnType
-        );
     }
 }
@@ -2,9 +2,8 @@ package org.ksharp.ir.truffle.call;
 
 import com.oracle.truffle.api.frame.VirtualFrame;
 import org.ksharp.ir.KValue;
-import org.ksharp.ir.truffle.FunctionNode;
 import org.ksharp.ir.truffle.KSharpNode;
-import org.ksharp.ir.truffle.runtime.FunctionObject;
+import org.ksharp.ir.truffle.runtime.ClosureObject;
 import org.ksharp.typesystem.types.Type;
 
 public class LambdaCallNode extends BaseCallNode {
@@ -17,8 +16,6 @@ public class LambdaCallNode extends BaseCallNode {
     @Child
     private KSharpNode lambda;
 
-    private FunctionObject functionTarget;
-
     public LambdaCallNode(KSharpNode lambda, KSharpNode[] arguments, Type returnType) {
         super(arguments, returnType);
         this.dispatchNode = FunctionDispatchNodeGen.create();
@@ -27,14 +24,16 @@ public class LambdaCallNode extends BaseCallNode {
 
     @Override
     public Object execute(VirtualFrame frame) {
-        var argumentValues = getArguments(frame);
-        if (functionTarget == null) {
-            var funNode = (FunctionNode) KValue.value(lambda.execute(frame));
-            functionTarget = new FunctionObject(funNode.getCallTarget());
+        var argumentValues = getArguments(frame, 1).getSecond();
+        var closure = (ClosureObject) KValue.value(lambda.execute(frame));
+        argumentValues[argumentValues.length - 1] = closure.environment;
+        try {
+            return KValue.wrap(
+                    dispatchNode.executeDispatch(closure, argumentValues),
+                    returnType
+            );
+        } catch (RuntimeException e) {
+            throw failure(e);
         }
-        return KValue.wrap(
-                dispatchNode.executeDispatch(functionTarget, argumentValues.getSecond()),
-                returnType
-        );
     }
 }
@@ -18,10 +18,14 @@ public abstract class ModuleCallNode extends BaseCallNode {
 
     @Override
     public Object execute(VirtualFrame frame) {
-        if (call == null) {
-            call = getCall();
-        }
         var argumentValues = getArguments(frame).getSecond();
-        return KValue.wrap(call.execute(argumentValues), returnType);
+        try {
+            if (call == null) {
+                call = getCall();
+            }
+            return KValue.wrap(call.execute(argumentValues), returnType);
+        } catch (RuntimeException e) {
+            throw failure(e);
+        }
     }
 }
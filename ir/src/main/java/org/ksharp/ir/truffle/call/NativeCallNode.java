@@ -35,6 +35,10 @@ public abstract class NativeCallNode extends BaseCallNode {
     @Override
     public Object execute(VirtualFrame frame) {
         var argumentValues = getArguments(frame).getSecond();
-        return KValue.wrap(getCall().execute(argumentValues), returnType);
+        try {
+            return KValue.wrap(getCall().execute(argumentValues), returnType);
+        } catch (RuntimeException e) {
+            throw failure(e);
+        }
     }
 }
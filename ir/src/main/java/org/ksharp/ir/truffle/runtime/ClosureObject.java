@@ -0,0 +1,29 @@
+package org.ksharp.ir.truffle.runtime;
+
+import com.oracle.truffle.api.CallTarget;
+
+import java.util.Arrays;
+
+public class ClosureObject extends FunctionObject {
+
+    public final Object[] environment;
+
+    public ClosureObject(CallTarget callTarget, Object[] environment) {
+        super(callTarget);
+        this.environment = environment;
+    }
+
+    /**
+     * Used by the calls from outside the language, the calls inside reserve the environment slot, see LambdaCallNode
+     */
+    public Object[] withEnvironment(Object[] arguments) {
+        var result = Arrays.copyOf(arguments, arguments.length + 1);
+        result[arguments.length] = environment;
+        return result;
+    }
+
+    @Override
+    protected Object[] callArguments(Object[] arguments) {
+        return withEnvironment(arguments);
+    }
+}
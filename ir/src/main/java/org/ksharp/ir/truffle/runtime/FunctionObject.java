@@ -1,8 +1,16 @@
 package org.ksharp.ir.truffle.runtime;
 
 import com.oracle.truffle.api.CallTarget;
+import com.oracle.truffle.api.dsl.Cached;
+import com.oracle.truffle.api.interop.InteropLibrary;
 import com.oracle.truffle.api.interop.TruffleObject;
+import com.oracle.truffle.api.library.CachedLibrary;
+import com.oracle.truffle.api.library.ExportLibrary;
+import com.oracle.truffle.api.library.ExportMessage;
+import com.oracle.truffle.api.nodes.IndirectCallNode;
+import org.ksharp.ir.truffle.KSharpContext;
 
+@ExportLibrary(InteropLibrary.class)
 public class FunctionObject implements TruffleObject {
 
     public final CallTarget callTarget;
@@ -11,7 +19,25 @@ public class FunctionObject implements TruffleObject {
         this.callTarget = callTarget;
     }
 
+    protected Object[] callArguments(Object[] arguments) {
+        return arguments;
+    }
+
     public Object execute(Object[] arguments) {
-        return callTarget.call(arguments);
+        return callTarget.call(callArguments(arguments));
+    }
+
+    @ExportMessage
+    boolean isExecutable() {
+        return true;
+    }
+
+    @ExportMessage(name = "execute")
+    Object executeMessage(
+            Object[] arguments,
+            @CachedLibrary("this") InteropLibrary node,
+            @Cached IndirectCallNode callNode
+    ) {
+        return KSharpContext.get(node).toInteropValue(callNode.call(callTarget, callArguments(arguments)));
     }
 }
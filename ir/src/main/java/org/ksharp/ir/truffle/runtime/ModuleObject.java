@@ -0,0 +1,75 @@
+package org.ksharp.ir.truffle.runtime;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.interop.InteropLibrary;
+import com.oracle.truffle.api.interop.TruffleObject;
+import com.oracle.truffle.api.interop.UnknownIdentifierException;
+import com.oracle.truffle.api.library.ExportLibrary;
+import com.oracle.truffle.api.library.ExportMessage;
+import org.ksharp.ir.IrFunction;
+import org.ksharp.ir.IrModule;
+import org.ksharp.ir.IrModuleKt;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@ExportLibrary(InteropLibrary.class)
+public final class ModuleObject implements TruffleObject {
+
+    private final IrModule module;
+    private final Map<String, FunctionObject> functions = new ConcurrentHashMap<>();
+    private volatile String[] functionNames;
+
+    public ModuleObject(IrModule module) {
+        this.module = module;
+    }
+
+    /**
+     * The function is decoded the first time it is read
+     */
+    private FunctionObject function(String name) {
+        return functions.computeIfAbsent(name, key -> {
+            if (IrModuleKt.symbol(module.getSymbols(), key) instanceof IrFunction function) {
+                return new FunctionObject(function.getCallTarget());
+            }
+            return null;
+        });
+    }
+
+    @ExportMessage
+    boolean hasMembers() {
+        return true;
+    }
+
+    /**
+     * Only the functions are members, listing them decodes all the symbols
+     */
+    private String[] functionNames() {
+        if (functionNames == null) {
+            functionNames = IrModuleKt.getFunctionNames(module.getSymbols()).toArray(new String[0]);
+        }
+        return functionNames;
+    }
+
+    @ExportMessage
+    @TruffleBoundary
+    Object getMembers(@SuppressWarnings("unused") boolean includeInternal) {
+        return new MembersObject(functionNames());
+    }
+
+    @ExportMessage
+    @TruffleBoundary
+    boolean isMemberReadable(String member) {
+        return function(member) != null;
+    }
+
+    @ExportMessage
+    @TruffleBoundary
+    Object readMember(String member) throws UnknownIdentifierException {
+        var function = function(member);
+        if (function == null) {
+            throw UnknownIdentifierException.create(member);
+        }
+        return function;
+    }
+}
@@ -0,0 +1,49 @@
+package org.ksharp.ir.truffle.variable;
+
+import com.oracle.truffle.api.dsl.NodeField;
+import com.oracle.truffle.api.dsl.Specialization;
+import com.oracle.truffle.api.frame.VirtualFrame;
+import com.oracle.truffle.api.nodes.UnexpectedResultException;
+import org.ksharp.ir.truffle.KSharpNode;
+
+@NodeField(name = "captureIndex", type = int.class)
+public abstract class BaseCaptureAccessNode extends KSharpNode {
+    protected abstract int getCaptureIndex();
+
+    protected final Object capturedValue(VirtualFrame frame) {
+        return ((Object[]) frame.getObject(0))[getCaptureIndex()];
+    }
+
+    @Specialization(rewriteOn = UnexpectedResultException.class)
+    protected long doLong(VirtualFrame frame) throws UnexpectedResultException {
+        var value = capturedValue(frame);
+        if (value instanceof Long longValue) {
+            return longValue;
+        }
+        throw new UnexpectedResultException(value);
+    }
+
+    @Specialization(rewriteOn = UnexpectedResultException.class)
+    protected double doDouble(VirtualFrame frame) throws UnexpectedResultException {
+        var value = capturedValue(frame);
+        if (value instanceof Double doubleValue) {
+            return doubleValue;
+        }
+        throw new UnexpectedResultException(value);
+    }
+
+    @Specialization(rewriteOn = UnexpectedResultException.class)
+    protected boolean doBoolean(VirtualFrame frame) throws UnexpectedResultException {
+        var value = capturedValue(frame);
+        if (value instanceof Boolean booleanValue) {
+            return booleanValue;
+        }
+        throw new UnexpectedResultException(value);
+    }
+
+    @Specialization(replaces = {"doLong", "doDouble", "doBoolean"})
+    protected Object doObject(VirtualFrame frame) {
+        return capturedValue(frame);
+    }
+
+}
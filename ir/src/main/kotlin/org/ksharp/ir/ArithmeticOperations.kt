@@ -1,9 +1,11 @@
 package org.ksharp.ir
 
+import com.oracle.truffle.api.CallTarget
 import org.ksharp.common.Location
 import org.ksharp.common.cast
 import org.ksharp.ir.serializer.IrNodeSerializers
 import org.ksharp.ir.truffle.FunctionNode
+import org.ksharp.ir.truffle.KSharpLanguage
 import org.ksharp.ir.truffle.arithmetic.*
 import org.ksharp.typesystem.attributes.Attribute
 
@@ -76,9 +78,17 @@ data class IrMod(
 }
 
 data class IrArithmeticCall(
-    @get:JvmName("getSymbolName") override val name: String,
+    override val name: String,
     override val expr: IrBinaryOperation,
-) : FunctionNode(2, null, expr.cast()), IrTopLevelSymbol {
+) : IrTopLevelSymbol {
+    /**
+     * Language of the root node, set by the decoder before the function is called
+     */
+    internal var language: KSharpLanguage? = null
+
+    override val callTarget: CallTarget by lazy {
+        FunctionNode(language, 2, expr.cast()).callTarget
+    }
 
     override val attributes: Set<Attribute> = expr.attributes
     override val location: Location = expr.location
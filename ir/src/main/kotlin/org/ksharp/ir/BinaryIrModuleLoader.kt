@@ -0,0 +1,29 @@
+package org.ksharp.ir
+
+import org.ksharp.common.io.bufferView
+import org.ksharp.ir.serializer.readIrModule
+import org.ksharp.ir.truffle.KSharpLanguage
+import org.ksharp.module.bytecode.readModuleInfo
+
+/**
+ * Loads already compiled modules (.ksm and .ksc), each module is decoded once
+ */
+class BinaryIrModuleLoader(
+    private val binaryLoad: (path: String) -> ByteArray?,
+    override val language: KSharpLanguage? = null
+) : LoadIrModuleFn {
+    private val modules = mutableMapOf<String, IrModuleInfo>()
+
+    private fun decode(name: String): IrModuleInfo? {
+        val path = name.replace('.', '/')
+        val info = binaryLoad("$path.ksm") ?: return null
+        val code = binaryLoad("$path.ksc") ?: return null
+        return IrModuleInfo(
+            info.inputStream().bufferView { it.readModuleInfo() },
+            code.readIrModule(this)
+        )
+    }
+
+    override fun load(name: String): IrModuleInfo? =
+        modules[name] ?: decode(name)?.also { modules[name] = it }
+}
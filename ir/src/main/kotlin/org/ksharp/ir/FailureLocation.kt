@@ -0,0 +1,85 @@
+package org.ksharp.ir
+
+import com.oracle.truffle.api.nodes.Node
+import com.oracle.truffle.api.nodes.RootNode
+import org.ksharp.common.Location
+import org.ksharp.common.cast
+import org.ksharp.ir.truffle.ClosureFunctionNode
+import org.ksharp.ir.truffle.FailedNodes
+
+/**
+ * Step of a node path that enters the body of a lambda, the other steps are child indexes
+ */
+private const val LambdaBody = -1
+
+private class NodePath(
+    val top: Node,
+    val steps: List<Int>
+)
+
+/**
+ * Path from the expression of the top level symbol to the node, the closure roots continue from their lambda
+ */
+private fun Node.path(): NodePath? {
+    val steps = ArrayDeque<Int>()
+    var node = this
+    while (true) {
+        val parent = node.parent ?: return null
+        if (parent is ClosureFunctionNode) {
+            steps.addFirst(LambdaBody)
+            node = parent.lambda()
+            continue
+        }
+        if (parent is RootNode) return NodePath(node, steps)
+        steps.addFirst(parent.children.indexOfFirst { it === node })
+        node = parent
+    }
+}
+
+private fun Node.follow(steps: List<Int>): Node? =
+    steps.fold<Int, Node?>(this) { node, step ->
+        when {
+            node == null -> null
+            step == LambdaBody -> (node as? IrLambda)?.expr?.cast()
+            else -> node.children.elementAtOrNull(step)
+        }
+    }
+
+private val IrModule.symbolLists: Map<Any?, List<IrTopLevelSymbol>>
+    get() = buildMap {
+        put(null, symbols)
+        putAll(traitSymbols)
+        putAll(implSymbols)
+    }
+
+private fun List<IrTopLevelSymbol>.decodedIndexOf(predicate: (IrTopLevelSymbol) -> Boolean): Int =
+    indices.firstOrNull { index ->
+        (if (this is IrSymbols) decodedOrNull(index) else this[index])?.let(predicate) == true
+    } ?: -1
+
+/**
+ * The node is found in the source mapped module by its position in the symbol, as both modules are decoded
+ * from the same binary the nodes in the same position are the same
+ */
+private fun IrModule.sourceLocation(node: Node, sourceMapped: () -> IrModule): Location? {
+    val path = node.path() ?: return null
+    symbolLists.forEach { (key, symbols) ->
+        val index = symbols.decodedIndexOf { it.expr === path.top }
+        if (index != -1) {
+            return sourceMapped().symbolLists[key]
+                ?.getOrNull(index)
+                ?.expr?.cast<Node>()
+                ?.follow(path.steps)
+                ?.takeIf { it.javaClass == node.javaClass }
+                ?.let { (it as? IrSymbol)?.location }
+        }
+    }
+    return null
+}
+
+/**
+ * Source location of the node where the execution failed, or of the call in this module that leads to it
+ * when the failure is in another module. Returns null when the failure wasn't raised by the module nodes
+ */
+fun IrModule.failureLocation(exception: Throwable, sourceMapped: () -> IrModule): Location? =
+    FailedNodes.of(exception)?.nodes?.firstNotNullOfOrNull { sourceLocation(it, sourceMapped) }
@@ -1,7 +1,6 @@
 package org.ksharp.ir
 
 import com.oracle.truffle.api.CallTarget
-import com.oracle.truffle.api.nodes.RootNode
 import org.ksharp.common.Location
 import org.ksharp.common.cast
 import org.ksharp.ir.serializer.IrNodeSerializers
@@ -33,7 +32,7 @@ sealed interface IrBinaryOperation : IrExpression {
 }
 
 sealed interface IrValueAccess : IrExpression {
-    val captureName: String?
+    val captureIndex: Int
     val index: Int
 }
 
@@ -86,19 +85,19 @@ data class IrPair(
 
 data class IrArg(
     override val attributes: Set<Attribute>,
-    override val captureName: String? = null,
+    override val captureIndex: Int = NoCaptured,
     override val index: Int,
     override val location: Location
-) : ArgAccessNode(index, captureName), IrValueAccess {
+) : ArgAccessNode(index, captureIndex), IrValueAccess {
     override val serializer: IrNodeSerializers = IrNodeSerializers.Arg
 }
 
 data class IrVar(
     override val attributes: Set<Attribute>,
-    override val captureName: String? = null,
+    override val captureIndex: Int = NoCaptured,
     override val index: Int,
     override val location: Location
-) : VarAccessNode(index, captureName), IrValueAccess {
+) : VarAccessNode(index, captureIndex), IrValueAccess {
     override val serializer: IrNodeSerializers = IrNodeSerializers.Var
 }
 
@@ -125,7 +124,7 @@ data class IrCall(
     lateinit var functionLookup: FunctionLookup
 
     override fun getCallTarget(firstArgument: Type?): CallTarget? =
-        functionLookup.find(module, scope, firstArgument).cast<RootNode>().callTarget
+        functionLookup.find(module, scope, firstArgument).callTarget
 
     override val serializer: IrNodeSerializers = IrNodeSerializers.Call
 
@@ -185,9 +184,7 @@ data class IrModuleCall internal constructor(
                 val impl = firstArgument.impl
                 val functions = module.implSymbols[Impl("", firstArgument.trait.name, impl)]
 
-                firstArgument.trait to functions?.firstOrNull {
-                    it.name == functionName
-                }
+                firstArgument.trait to functions?.symbol(functionName)
             }
 
             is FixedTraitType -> {
@@ -197,9 +194,7 @@ data class IrModuleCall internal constructor(
             else -> firstArgument.cast<TraitType>() to null
         }
         val function = implFunction
-            ?: module.traitSymbols[traitType.name]?.firstOrNull {
-                it.name == functionName
-            }
+            ?: module.traitSymbols[traitType.name]?.symbol(functionName)
         if (function != null) {
             return FunctionCall(function.cast())
         }
@@ -214,9 +209,7 @@ data class IrModuleCall internal constructor(
     }
 
     private fun getCall(module: IrModule): Call {
-        val function = module.symbols.firstOrNull {
-            it.name == functionName
-        }
+        val function = module.symbols.symbol(functionName)
         if (function != null) {
             return FunctionCall(function.cast())
         }
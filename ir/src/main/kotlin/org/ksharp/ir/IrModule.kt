@@ -3,9 +3,11 @@ package org.ksharp.ir
 import org.ksharp.common.Location
 import org.ksharp.common.cacheOf
 import org.ksharp.common.cast
+import org.ksharp.common.mapChunks
 import org.ksharp.ir.serializer.IrNodeSerializers
 import org.ksharp.ir.transform.BinaryOperationFactory
 import org.ksharp.ir.transform.abstractionToIrSymbol
+import org.ksharp.ir.truffle.KSharpLanguage
 import org.ksharp.module.CodeModule
 import org.ksharp.module.Impl
 import org.ksharp.module.ModuleInfo
@@ -15,6 +17,8 @@ import org.ksharp.typesystem.attributes.CommonAttribute
 import org.ksharp.typesystem.attributes.NameAttribute
 import org.ksharp.typesystem.attributes.NoAttributes
 import org.ksharp.typesystem.types.Type
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.atomic.AtomicReferenceArray
 
 class IrModuleInfo(
     val moduleInfo: ModuleInfo,
@@ -23,12 +27,73 @@ class IrModuleInfo(
 
 fun interface LoadIrModuleFn {
     fun load(name: String): IrModuleInfo?
+
+    /**
+     * Language of the root nodes decoded with this loader, null outside a truffle context
+     */
+    val language: KSharpLanguage? get() = null
 }
 
 fun interface FunctionLookup {
     fun find(module: String?, call: CallScope, firstValue: Type?): IrTopLevelSymbol
 }
 
+/**
+ * Top level symbols decoded from a binary, each symbol is decoded the first time it is accessed.
+ * The names come from the symbol directory, so finding a symbol by name doesn't decode the others
+ */
+class IrSymbols(
+    val names: List<String>,
+    private val decode: (index: Int) -> IrTopLevelSymbol
+) : AbstractList<IrTopLevelSymbol>() {
+    private val symbols = AtomicReferenceArray<IrTopLevelSymbol>(names.size)
+    private val indexes by lazy {
+        HashMap<String, Int>(names.size * 2).also { indexes ->
+            names.forEachIndexed { index, name -> indexes.putIfAbsent(name, index) }
+        }
+    }
+
+    override val size: Int get() = names.size
+
+    /**
+     * Symbols can be decoded concurrently, when two threads decode the same symbol the first one wins
+     */
+    override fun get(index: Int): IrTopLevelSymbol =
+        symbols[index] ?: decode(index).let {
+            if (symbols.compareAndSet(index, null, it)) it
+            else symbols[index]
+        }
+
+    /**
+     * Returns the symbol only when it is already decoded
+     */
+    internal fun decodedOrNull(index: Int): IrTopLevelSymbol? = symbols[index]
+
+    /**
+     * Decode all the symbols in chunks on the pool
+     */
+    fun decodeAll(pool: ForkJoinPool) {
+        pool.mapChunks(size, transform = ::get)
+    }
+
+    fun find(name: String): IrTopLevelSymbol? =
+        indexes[name]?.let(::get)
+}
+
+fun List<IrTopLevelSymbol>.symbol(name: String): IrTopLevelSymbol? =
+    if (this is IrSymbols) find(name)
+    else firstOrNull { it.name == name }
+
+val List<IrTopLevelSymbol>.symbolNames: List<String>
+    get() = if (this is IrSymbols) names
+    else map { it.name }
+
+/**
+ * Names of the functions, the symbols are decoded to know which ones are functions
+ */
+val List<IrTopLevelSymbol>.functionNames: List<String>
+    get() = filterIsInstance<IrFunction>().map { it.name }.distinct()
+
 internal val Type?.irCustomNode: String?
     get() =
         if (this != null) attributes.firstOrNull { a -> a is NameAttribute }
@@ -81,10 +146,7 @@ private class FunctionLookupImpl : FunctionLookup {
     }
 
     private fun List<IrTopLevelSymbol>?.findFunction(call: CallScope): IrTopLevelSymbol? =
-        if (this == null) null
-        else asSequence()
-            .filter { it.name == call.callName }
-            .firstOrNull()
+        this?.symbol(call.callName)
 
     private fun Impl.findImplFunction(call: CallScope): IrTopLevelSymbol? =
         impls[this].findFunction(call)
@@ -124,6 +186,15 @@ data class IrModule(
     override val serializer: IrNodeSerializers = IrNodeSerializers.Module
 }
 
+/**
+ * Decode the symbols on the pool instead of on demand
+ */
+fun IrModule.decodeAll(pool: ForkJoinPool) {
+    (sequenceOf(symbols) + traitSymbols.values + implSymbols.values)
+        .filterIsInstance<IrSymbols>()
+        .forEach { it.decodeAll(pool) }
+}
+
 private fun List<AbstractionNode<SemanticInfo>>.mapToIrSymbols(
     state: PartialIrState
 ) =
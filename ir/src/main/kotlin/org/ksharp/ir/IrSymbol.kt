@@ -1,9 +1,11 @@
 package org.ksharp.ir
 
+import com.oracle.truffle.api.CallTarget
 import org.ksharp.common.Location
 import org.ksharp.common.cast
 import org.ksharp.ir.serializer.IrNodeSerializers
 import org.ksharp.ir.truffle.FunctionNode
+import org.ksharp.ir.truffle.KSharpLanguage
 import org.ksharp.ir.truffle.LambdaNode
 import org.ksharp.ir.truffle.variable.CaptureVarNode
 import org.ksharp.typesystem.attributes.Attribute
@@ -16,16 +18,26 @@ interface IrSymbol : IrNode {
 interface IrTopLevelSymbol : IrSymbol {
     val name: String
     val expr: IrExpression
+    val callTarget: CallTarget
 }
 
 data class IrFunction(
     override val attributes: Set<Attribute>,
-    @get:JvmName("getSymbolName") override val name: String,
+    override val name: String,
     val arguments: List<String>,
     val frameSlots: Int,
     override val expr: IrExpression,
     override val location: Location
-) : FunctionNode(frameSlots, null, expr.cast()), IrTopLevelSymbol, IrExpression {
+) : IrTopLevelSymbol, IrExpression {
+    /**
+     * Language of the root node, set by the decoder before the function is called
+     */
+    internal var language: KSharpLanguage? = null
+
+    override val callTarget: CallTarget by lazy {
+        FunctionNode(language, frameSlots, expr.cast()).callTarget
+    }
+
     fun call(vararg arguments: Any): Any = KValue.value(callTarget.call(*arguments))
 
     override val serializer: IrNodeSerializers = IrNodeSerializers.Function
@@ -22,18 +22,8 @@ data class KValue(
     val value: Any
 ) {
     companion object {
-        @JvmStatic
-        fun value(value: Any): Any =
-            if (value is KValue) {
-                value.value
-            } else {
-                value
-            }
-
-        @JvmStatic
-        fun type(value: Any): Type? =
+        private fun primitiveType(value: Any): Type? =
             when (value) {
-                is KValue -> value.type
                 is Byte -> byteType
                 is Short -> shortType
                 is Int -> intType
@@ -49,8 +39,32 @@ data class KValue(
             }
 
         @JvmStatic
-        fun wrap(value: Any, type: Type): KValue =
-            if (value is KValue) KValue(type, value.value)
-            else KValue(type, value)
+        fun value(value: Any): Any =
+            if (value is KValue) {
+                value.value
+            } else {
+                value
+            }
+
+        @JvmStatic
+        fun type(value: Any): Type? =
+            if (value is KValue) value.type
+            else primitiveType(value)
+
+        /**
+         * Tags the value with its type. Primitive values whose runtime class already gives the declared type
+         * are returned unboxed, the others keep the tag so trait dispatch follows the declared type
+         * (e.g. an `Int` held as a `Long`)
+         */
+        @JvmStatic
+        fun wrap(value: Any, type: Type): Any =
+            when {
+                value is KValue ->
+                    if (value.type === type) value
+                    else KValue(type, value.value)
+
+                primitiveType(value) == type -> value
+                else -> KValue(type, value)
+            }
     }
 }
@@ -2,7 +2,7 @@ package org.ksharp.ir
 
 import org.ksharp.typesystem.attributes.Attribute
 
-val NoCaptured: String? = null
+const val NoCaptured: Int = -1
 
 enum class VarKind {
     Var,
@@ -13,7 +13,7 @@ data class VarInfo(
     val index: Int,
     val kind: VarKind,
     val attributes: Set<Attribute>,
-    val captureName: String? = NoCaptured
+    val captureIndex: Int = NoCaptured
 )
 
 interface VariableIndex {
@@ -25,21 +25,15 @@ class ClosureIndex(val arguments: VariableIndex, val context: VariableIndex) : V
     override val size: Int
         get() = arguments.size + 1
 
+    // the captured variables with their position in the closure environment, in insertion order
     val captured = mutableMapOf<String, VarInfo>()
 
     override operator fun get(name: String): VarInfo? {
         val arg = arguments[name]
         if (arg != null) return arg
 
-        val alreadyCaptured = captured[name]
-        if (alreadyCaptured != null) return alreadyCaptured.copy(captureName = name)
-
-        val captureVar = context[name]
-        if (captureVar != null) {
-            captured[name] = captureVar.copy(captureName = name)
-        }
-
         return captured[name]
+            ?: context[name]?.copy(captureIndex = captured.size)?.also { captured[name] = it }
     }
 }
 
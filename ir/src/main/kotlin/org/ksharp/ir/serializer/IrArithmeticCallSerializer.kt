@@ -23,6 +23,6 @@ class IrArithmeticCallSerializer : IrNodeSerializer<IrArithmeticCall> {
     ): IrArithmeticCall {
         val name = table[buffer.readInt(0)]
         val expr = buffer.bufferFrom(4).readIrNode(lookup, loader, table)
-        return IrArithmeticCall(name, expr.cast())
+        return IrArithmeticCall(name, expr.cast()).also { it.language = loader.language }
     }
 }
@@ -58,8 +58,8 @@ class IrCallSerializer : IrNodeSerializer<IrCall> {
         offset += 4
         val (callScopePosition, callScope) = buffer.bufferFrom(offset).readCallScope(table)
         offset += callScopePosition
-        val location = buffer.bufferFrom(offset).readLocation()
-        offset += 16
+        val (locationPosition, location) = buffer.bufferFrom(offset).readLocationAndPosition()
+        offset += locationPosition
         val type = buffer.bufferFrom(offset).readType<Type>(preludeModule.typeSystem.handle, table)
         offset += buffer.readInt(offset)
         val arguments = buffer.bufferFrom(offset).readListOfNodes(lookup, loader, table).second
@@ -70,7 +70,7 @@ class IrCallSerializer : IrNodeSerializer<IrCall> {
             arguments.cast(),
             type,
             location
-        )
+        ).apply { functionLookup = lookup }
     }
 }
 
@@ -93,8 +93,8 @@ class IrNativeCallSerializer : IrNodeSerializer<IrNativeCall> {
         var offset = buffer.readInt(0)
         val functionClass = table[buffer.readInt(offset)]
         offset += 4
-        val location = buffer.bufferFrom(offset).readLocation()
-        offset += 16
+        val (locationPosition, location) = buffer.bufferFrom(offset).readLocationAndPosition()
+        offset += locationPosition
         val type = buffer.bufferFrom(offset).readType<Type>(preludeModule.typeSystem.handle, table)
         offset += buffer.readInt(offset)
         val arguments = buffer.bufferFrom(offset).readListOfNodes(lookup, loader, table).second
@@ -130,8 +130,8 @@ class IrModuleCallSerializer : IrNodeSerializer<IrModuleCall> {
         offset += 4
         val name = table[buffer.readInt(offset)]
         offset += 4
-        val location = buffer.bufferFrom(offset).readLocation()
-        offset += 16
+        val (locationPosition, location) = buffer.bufferFrom(offset).readLocationAndPosition()
+        offset += locationPosition
         val type = buffer.bufferFrom(offset).readType<Type>(preludeModule.typeSystem.handle, table)
         offset += buffer.readInt(offset)
         val arguments = buffer.bufferFrom(offset).readListOfNodes(lookup, loader, table).second
@@ -166,8 +166,8 @@ class IrLambdaCallSerializer : IrNodeSerializer<IrLambdaCall> {
         var offset = buffer.readInt(0)
         val lambda = buffer.bufferFrom(offset).readIrNode(lookup, loader, table).cast<IrExpression>()
         offset += buffer.readInt(offset)
-        val location = buffer.bufferFrom(offset).readLocation()
-        offset += 16
+        val (locationPosition, location) = buffer.bufferFrom(offset).readLocationAndPosition()
+        offset += locationPosition
         val type = buffer.bufferFrom(offset).readType<Type>(preludeModule.typeSystem.handle, table)
         offset += buffer.readInt(offset)
         val arguments = buffer.bufferFrom(offset).readListOfNodes(lookup, loader, table).second
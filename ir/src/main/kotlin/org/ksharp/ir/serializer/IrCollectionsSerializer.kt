@@ -33,8 +33,8 @@ class IrCollectionsSerializer(private val factory: IrCollectionFactory) : IrNode
         var offset = buffer.readInt(0)
         val attributes = buffer.readAttributes(table)
 
-        val location = buffer.bufferFrom(offset).readLocation()
-        offset += 16
+        val (locationPosition, location) = buffer.bufferFrom(offset).readLocationAndPosition()
+        offset += locationPosition
 
         return factory(
             attributes,
@@ -62,8 +62,8 @@ class IrMapSerializer : IrNodeSerializer<IrMap> {
         var offset = buffer.readInt(0)
         val attributes = buffer.readAttributes(table)
 
-        val location = buffer.bufferFrom(offset).readLocation()
-        offset += 16
+        val (locationPosition, location) = buffer.bufferFrom(offset).readLocationAndPosition()
+        offset += locationPosition
 
         return IrMap(
             attributes,
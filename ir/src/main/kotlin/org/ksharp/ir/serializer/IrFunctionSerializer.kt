@@ -64,7 +64,7 @@ class IrFunctionSerializer : IrNodeSerializer<IrFunction> {
             frameSlot,
             expr.cast(),
             location
-        )
+        ).also { it.language = loader.language }
     }
 }
 
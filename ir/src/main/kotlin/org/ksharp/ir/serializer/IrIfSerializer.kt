@@ -25,9 +25,9 @@ class IrIfSerializer : IrNodeSerializer<IrIf> {
         buffer: BufferView,
         table: BinaryTableView
     ): IrIf {
-        val location = buffer.readLocation()
-        val attributes = buffer.bufferFrom(16).readAttributes(table)
-        val exprs = buffer.bufferFrom(16 + buffer.readInt(16))
+        val (offset, location) = buffer.readLocationAndPosition()
+        val attributes = buffer.bufferFrom(offset).readAttributes(table)
+        val exprs = buffer.bufferFrom(offset + buffer.readInt(offset))
             .readListOfNodes(lookup, loader, table).second
             .cast<List<IrExpression>>()
         return IrIf(attributes, exprs[0], exprs[1], exprs[2], location)
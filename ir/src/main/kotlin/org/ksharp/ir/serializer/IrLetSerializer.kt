@@ -27,8 +27,8 @@ class IrLetSerializer : IrNodeSerializer<IrLet> {
     ): IrLet {
         val attributes = buffer.readAttributes(table)
         var offset = buffer.readInt(0)
-        val location = buffer.bufferFrom(offset).readLocation()
-        offset += 16
+        val (locationPosition, location) = buffer.bufferFrom(offset).readLocationAndPosition()
+        offset += locationPosition
         val expressions = buffer.bufferFrom(offset).readListOfNodes(lookup, loader, table).second
         return IrLet(
             attributes,
@@ -1,6 +1,5 @@
 package org.ksharp.ir.serializer
 
-import org.ksharp.common.cast
 import org.ksharp.common.io.BinaryTable
 import org.ksharp.common.io.BinaryTableView
 import org.ksharp.common.io.BufferView
@@ -11,7 +10,7 @@ import org.ksharp.ir.LoadIrModuleFn
 
 class IrModuleSerializer : IrNodeSerializer<IrModule> {
     override fun write(input: IrModule, buffer: BufferWriter, table: BinaryTable) {
-        input.symbols.writeTo(buffer, table)
+        input.symbols.writeSymbolsTo(buffer, table)
         input.traitSymbols.writeTo(buffer, table)
         input.implSymbols.writeTo(buffer, table)
     }
@@ -22,9 +21,9 @@ class IrModuleSerializer : IrNodeSerializer<IrModule> {
         buffer: BufferView,
         table: BinaryTableView
     ): IrModule {
-        val (listOffset, functions) = buffer.readListOfNodes(lookup, loader, table)
+        val (listOffset, functions) = buffer.readSymbols(lookup, loader, table)
         val (traitOffset, traitSymbols) = buffer.bufferFrom(listOffset).readMapOfTraitNodes(lookup, loader, table)
         val (_, implSymbols) = buffer.bufferFrom(listOffset + traitOffset).readMapOfImplNodes(lookup, loader, table)
-        return IrModule(functions.cast(), traitSymbols.cast(), implSymbols.cast())
+        return IrModule(functions, traitSymbols, implSymbols)
     }
 }
@@ -8,14 +8,13 @@ import org.ksharp.common.io.BufferWriter
 import org.ksharp.ir.FunctionLookup
 import org.ksharp.ir.IrValueAccess
 import org.ksharp.ir.LoadIrModuleFn
-import org.ksharp.ir.NoCaptured
 import org.ksharp.typesystem.attributes.Attribute
 import org.ksharp.typesystem.attributes.readAttributes
 import org.ksharp.typesystem.attributes.writeTo
 
 typealias IrVarAccessFactory = (
     attribute: Set<Attribute>,
-    name: String?,
+    captureIndex: Int,
     index: Int,
     location: Location
 ) -> IrValueAccess
@@ -23,7 +22,7 @@ typealias IrVarAccessFactory = (
 class IrVarValueSerializer(private val factory: IrVarAccessFactory) : IrNodeSerializer<IrValueAccess> {
     override fun write(input: IrValueAccess, buffer: BufferWriter, table: BinaryTable) {
         buffer.add(input.index)
-        buffer.add(if (input.captureName == NoCaptured) -1 else table.add(input.captureName!!))
+        buffer.add(input.captureIndex)
         input.location.writeTo(buffer)
         input.attributes.writeTo(buffer, table)
     }
@@ -33,13 +32,13 @@ class IrVarValueSerializer(private val factory: IrVarAccessFactory) : IrNodeSeri
         loader: LoadIrModuleFn,
         buffer: BufferView,
         table: BinaryTableView
-    ): IrValueAccess =
-        factory(
-            buffer.bufferFrom(24).readAttributes(table),
-            buffer.readInt(4).let {
-                if (it == -1) NoCaptured else table[it]
-            },
+    ): IrValueAccess {
+        val (locationPosition, location) = buffer.bufferFrom(8).readLocationAndPosition()
+        return factory(
+            buffer.bufferFrom(8 + locationPosition).readAttributes(table),
+            buffer.readInt(4),
             buffer.readInt(0),
-            buffer.bufferFrom(8).readLocation()
+            location
         )
+    }
 }
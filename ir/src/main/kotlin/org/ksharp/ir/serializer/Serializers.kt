@@ -10,6 +10,9 @@ import org.ksharp.module.bytecode.readImpl
 import org.ksharp.module.bytecode.writeTo
 import org.ksharp.module.prelude.preludeModule
 import java.io.OutputStream
+import java.nio.channels.Channels
+import java.nio.channels.WritableByteChannel
+import java.util.concurrent.ForkJoinPool
 
 interface IrNodeSerializer<S : IrNode> : SerializerWriter<S> {
     fun read(lookup: FunctionLookup, loader: LoadIrModuleFn, buffer: BufferView, table: BinaryTableView): S
@@ -18,7 +21,7 @@ interface IrNodeSerializer<S : IrNode> : SerializerWriter<S> {
 enum class IrNodeSerializers(
     val serializer: IrNodeSerializer<out IrNode>,
 ) {
-    //ADD new Serializers at the end of the list
+    //ADD new Serializers at the end of the list, changing the order requires a new ArtifactFormatVersion
     Module(IrModuleSerializer()),
     Function(IrFunctionSerializer()),
     Integer(IrIntegerSerializer()),
@@ -66,30 +69,67 @@ enum class IrNodeSerializers(
     CaptureVar(IrCaptureVarSerializer())
 }
 
+/**
+ * The compact encoding writes varints with the end relative to the start, usually 4 bytes instead of 16.
+ * The release encoding writes the index of the location in the buffer location table (-1 without table)
+ */
 fun Location.writeTo(buffer: BufferWriter) {
+    if (buffer.encoding == Encoding.Release) {
+        buffer.addVarInt(buffer.locations?.add(this) ?: -1)
+        return
+    }
+    if (buffer.encoding == Encoding.Compact) {
+        buffer.addVarInt(start.first.value)
+        buffer.addVarInt(start.second.value)
+        buffer.addVarInt(end.first.value - start.first.value)
+        buffer.addVarInt(end.second.value - start.second.value)
+        return
+    }
     buffer.add(start.first.value)
     buffer.add(start.second.value)
     buffer.add(end.first.value)
     buffer.add(end.second.value)
 }
 
-fun BufferView.readLocation(): Location {
+/**
+ * Returns the location and the number of bytes used to encode it,
+ * release locations are [Location.NoProvided] when the view doesn't have a location table
+ */
+fun BufferView.readLocationAndPosition(): Pair<Int, Location> {
+    if (encoding == Encoding.Release) {
+        val index = readVarInt(0)
+        val table = locations
+        return varIntSize(index) to
+                if (index == -1 || table == null) Location.NoProvided
+                else table[index]
+    }
+    if (encoding == Encoding.Compact) {
+        var position = 0
+        val values = IntArray(4) {
+            readVarInt(position).also { value -> position += varIntSize(value) }
+        }
+        val startLine = values[0]
+        val startOffset = values[1]
+        return position to Location(
+            Line(startLine) to Offset(startOffset),
+            Line(startLine + values[2]) to Offset(startOffset + values[3])
+        )
+    }
     val startLine = Line(readInt(0))
     val startOffset = Offset(readInt(4))
     val endLine = Line(readInt(8))
     val endOffset = Offset(readInt(12))
-    return Location(startLine to startOffset, endLine to endOffset)
+    return 16 to Location(startLine to startOffset, endLine to endOffset)
 }
 
+fun BufferView.readLocation(): Location = readLocationAndPosition().second
+
 fun IrNode.serialize(buffer: BufferWriter, table: BinaryTable) {
     val ordinal = serializer.ordinal
-    newBufferWriter().apply {
-        add(0)
-        add(ordinal)
+    buffer.sized {
+        it.add(ordinal)
         serializer.serializer.cast<SerializerWriter<IrNode>>()
-            .write(this@serialize, this, table)
-        set(0, size)
-        transferTo(buffer)
+            .write(this, it, table)
     }
 }
 
@@ -112,20 +152,65 @@ fun List<IrNode>.writeTo(buffer: BufferWriter, table: BinaryTable) {
     }
 }
 
-fun Map<String, List<IrNode>>.writeTo(buffer: BufferWriter, table: BinaryTable) {
+/**
+ * Writes a symbol directory (name and offset of each symbol) followed by the symbols,
+ * the directory allows to decode a symbol only when it is used
+ */
+fun List<IrTopLevelSymbol>.writeSymbolsTo(buffer: BufferWriter, table: BinaryTable) {
+    val directory = buffer.size
+    buffer.add(size)
+    forEach {
+        buffer.add(table.add(it.name))
+        buffer.add(0)
+    }
+    buffer.sized { symbols ->
+        forEachIndexed { index, symbol ->
+            buffer.set(directory + 8 + index * 8, symbols.size - 4)
+            symbol.serialize(symbols, table)
+        }
+    }
+}
+
+fun Map<String, List<IrTopLevelSymbol>>.writeTo(buffer: BufferWriter, table: BinaryTable) {
     buffer.add(size)
     forEach {
         buffer.add(table.add(it.key))
-        it.value.writeTo(buffer, table)
+        it.value.writeSymbolsTo(buffer, table)
     }
 }
 
 @JvmName("writeMapOfImplNodes")
-fun Map<Impl, List<IrNode>>.writeTo(buffer: BufferWriter, table: BinaryTable) {
+fun Map<Impl, List<IrTopLevelSymbol>>.writeTo(buffer: BufferWriter, table: BinaryTable) {
     buffer.add(size)
     forEach {
         it.key.writeTo(buffer, table)
-        it.value.writeTo(buffer, table)
+        it.value.writeSymbolsTo(buffer, table)
+    }
+}
+
+/**
+ * The symbols are decoded on demand, the buffer must be valid while the symbols are referenced
+ */
+fun BufferView.readSymbols(
+    lookup: FunctionLookup,
+    loader: LoadIrModuleFn,
+    tableView: BinaryTableView
+): Pair<Int, IrSymbols> {
+    val symbolsSize = readInt(0)
+    val names = ArrayList<String>(symbolsSize)
+    val offsets = IntArray(symbolsSize)
+    var position = 4
+    repeat(symbolsSize) {
+        names.add(tableView[readInt(position)])
+        offsets[it] = readInt(position + 4)
+        position += 8
+    }
+    val size = readInt(position)
+    val symbols = bufferFrom(position + 4)
+    return position + size to IrSymbols(names) { index ->
+        symbols.bufferFrom(offsets[index])
+            .readIrNode(lookup, loader, tableView)
+            .cast<IrTopLevelSymbol>()
     }
 }
 
@@ -149,15 +234,15 @@ fun BufferView.readMapOfTraitNodes(
     lookup: FunctionLookup,
     loader: LoadIrModuleFn,
     tableView: BinaryTableView
-): Pair<Int, Map<String, List<IrNode>>> {
+): Pair<Int, Map<String, List<IrTopLevelSymbol>>> {
     val paramsSize = readInt(0)
-    val result = mapBuilder<String, List<IrNode>>()
+    val result = mapBuilder<String, List<IrTopLevelSymbol>>()
     var position = 4
     repeat(paramsSize) {
         val key = tableView[readInt(position)]
         position += 4
         val listBuffer = bufferFrom(position)
-        val (listPosition, listItems) = listBuffer.readListOfNodes(lookup, loader, tableView)
+        val (listPosition, listItems) = listBuffer.readSymbols(lookup, loader, tableView)
         position += listPosition
         result.put(key, listItems)
     }
@@ -168,42 +253,86 @@ fun BufferView.readMapOfImplNodes(
     lookup: FunctionLookup,
     loader: LoadIrModuleFn,
     tableView: BinaryTableView
-): Pair<Int, Map<Impl, List<IrNode>>> {
+): Pair<Int, Map<Impl, List<IrTopLevelSymbol>>> {
     val handle = preludeModule.typeSystem.handle
     val paramsSize = readInt(0)
-    val result = mapBuilder<Impl, List<IrNode>>()
+    val result = mapBuilder<Impl, List<IrTopLevelSymbol>>()
     var position = 4
     repeat(paramsSize) {
         val implBuffer = bufferFrom(position)
         val key = bufferFrom(position).readImpl(handle, tableView)
         position += implBuffer.readInt(0)
         val listBuffer = bufferFrom(position)
-        val (listPosition, listItems) = listBuffer.readListOfNodes(lookup, loader, tableView)
+        val (listPosition, listItems) = listBuffer.readSymbols(lookup, loader, tableView)
         position += listPosition
         result.put(key, listItems)
     }
     return position to result.build()
 }
 
-fun IrModule.writeTo(output: OutputStream) {
-    val stringPool = StringPoolBuilder()
-    val code = newBufferWriter().apply {
-        serialize(this, stringPool)
+/**
+ * The encoding is recorded in the artifact header, the compact encoding reduces the size of the locations.
+ * The release encoding adds the locations to the location table, that is written apart (`.ksl`).
+ * With a shared string pool (e.g. the modules of a bundle) the pool is not written, its owner writes it once
+ */
+fun IrModule.writeTo(
+    channel: WritableByteChannel,
+    encoding: Encoding = Encoding.Fixed,
+    locations: LocationTableBuilder? = null,
+    sharedStringPool: StringPoolBuilder? = null
+) {
+    val stringPool = sharedStringPool ?: StringPoolBuilder()
+    artifactOf(ArtifactKind.Code, channel, encoding) { artifact ->
+        artifact.section(newBufferWriter(encoding, locations).also { serialize(it, stringPool) })
+        if (sharedStringPool == null) stringPool.writeTo(artifact)
     }
-    val header = newBufferWriter()
-    header.add(stringPool.size) // 0
-    header.transferTo(output)
-    stringPool.writeTo(output)
-    code.transferTo(output)
 }
 
+fun IrModule.writeTo(
+    output: OutputStream,
+    encoding: Encoding = Encoding.Fixed,
+    locations: LocationTableBuilder? = null,
+    sharedStringPool: StringPoolBuilder? = null
+) = writeTo(Channels.newChannel(output), encoding, locations, sharedStringPool)
 
-fun BufferView.readIrModule(loader: LoadIrModuleFn): IrModule {
+/**
+ * Modules written before the artifact header, the string pool size is in a header and the string pool is first
+ */
+private fun BufferView.legacyIrModuleSections(): List<BufferView> {
     val stringPoolSize = readInt(0)
     val offset = 4
-    val stringPool = StringPoolView(bufferFrom(offset))
+    return listOf(bufferFrom(offset + stringPoolSize), bufferFrom(offset))
+}
+
+/**
+ * The symbols are decoded on demand, unless a pool is provided then they are decoded in parallel.
+ * The location table resolves the locations of modules written with the release encoding.
+ * With intern the names are interned, see [StringPoolView]
+ */
+fun BufferView.readIrModule(
+    loader: LoadIrModuleFn,
+    pool: ForkJoinPool? = null,
+    locations: LocationTable? = null,
+    intern: Boolean = false
+): IrModule {
+    val sections = artifactSections(ArtifactKind.Code) ?: legacyIrModuleSections()
+    val code = sections.first()
     val lookup = functionLookup()
-    return bufferFrom(offset + stringPoolSize).readIrNode(lookup, loader, stringPool).cast<IrModule>().also {
+    return code.let {
+        if (locations != null) OffsetBufferView(0, it, it.encoding, locations)
+        else it
+    }.readIrNode(lookup, loader, sharedStringPool ?: StringPoolView(sections[1], intern)).cast<IrModule>().also {
         lookup.link(it)
+        if (pool != null) it.decodeAll(pool)
     }
 }
+
+/**
+ * The module keeps a reference to the bytes, the functions are decoded on demand
+ */
+fun ByteArray.readIrModule(
+    loader: LoadIrModuleFn,
+    pool: ForkJoinPool? = null,
+    locations: LocationTable? = null,
+    intern: Boolean = false
+): IrModule = bufferView().readIrModule(loader, pool, locations, intern)
@@ -36,14 +36,14 @@ fun VarInfo.toIrSymbol(location: Location): IrValueAccess =
     when (kind) {
         VarKind.Arg -> IrArg(
             attributes,
-            captureName,
+            captureIndex,
             index,
             location
         )
 
         VarKind.Var -> IrVar(
             attributes,
-            captureName,
+            captureIndex,
             index,
             location
         )
@@ -80,10 +80,11 @@ fun AbstractionLambdaNode<SemanticInfo>.toIrSymbol(state: IrState): IrExpression
     return IrLambda(
         //all functions are pure, except if it is marked impure
         expression.addExpressionAttributes(NoAttributes, CommonAttribute.Constant, CommonAttribute.Impure),
-        capturedState.map { entry ->
+        capturedState.keys.map { name ->
             IrCaptureVar(
-                entry.key,
-                entry.value.copy(captureName = NoCaptured).toIrSymbol(location)
+                name,
+                // the captured value is read from the enclosing scope
+                variableIndex.context[name]!!.toIrSymbol(location)
             )
         },
         arguments,
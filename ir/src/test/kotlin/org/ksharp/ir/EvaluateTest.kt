@@ -496,6 +496,49 @@ class EvaluateTest : StringSpec({
                |multiply b = \a-> a * b           
             """.trimMargin(),
             10.toLong()
+        ),
+        createSpec(
+            "Closures sharing a call site",
+            """|fn = let d = multiply 2
+               |         t = multiply 3
+               |     then (apply d 5) + (apply t 5)
+               |apply f x = f x
+               |multiply b = \a-> a * b
+            """.trimMargin(),
+            25.toLong()
+        ),
+        createSpec(
+            "Closure capturing several variables",
+            """|fn = let d = multiplyAdd 2 3
+               |     then d 5
+               |multiplyAdd b c = \a-> a * b + c
+            """.trimMargin(),
+            13.toLong()
+        ),
+        createSpec(
+            "Recursive numeric function",
+            """|fn = fib 10
+               |
+               |fib :: Long -> Long
+               |fib n = if n < 2 then n else (fib (n - 1)) + (fib (n - 2))
+            """.trimMargin(),
+            55.toLong()
+        ),
+        createSpec(
+            "Trait implemented for two integral types",
+            """|fn = (kind (int 10)) + (kind 10)
+               |
+               |trait Kind a =
+               |    kind :: a -> Int
+               |
+               |impl Kind for Int =
+               |    kind a = int 1
+               |
+               |impl Kind for Long =
+               |    kind a = int 2
+               |            
+            """.trimMargin(),
+            3.toInt()
         )
     ).forEach { (description, code, call) ->
         description {
@@ -506,6 +549,17 @@ class EvaluateTest : StringSpec({
 })
 
 
+class KValueTest : StringSpec({
+    "Keep the primitive values with the type of their runtime class unboxed" {
+        KValue.wrap(10.toLong(), longType).shouldBe(10.toLong())
+        KValue.type(KValue.wrap(10.toLong(), longType)).shouldBe(longType)
+    }
+    "Tag the primitive values when the declared type differs from their runtime class" {
+        KValue.wrap(10.toLong(), shortType).shouldBe(KValue(shortType, 10.toLong()))
+        KValue.type(KValue.wrap(10.toLong(), shortType)).shouldBe(shortType)
+    }
+})
+
 class CustomEvaluationTest : StringSpec({
     "Check a custom spec" {
         createSpec(
@@ -2,11 +2,17 @@ package org.ksharp.ir.serializer
 
 import io.kotest.core.spec.style.StringSpec
 import io.kotest.matchers.shouldBe
+import io.kotest.matchers.types.shouldBeInstanceOf
 import org.ksharp.common.*
 import org.ksharp.common.io.BinaryTable
 import org.ksharp.common.io.BinaryTableView
+import org.ksharp.common.io.Encoding
+import org.ksharp.common.io.LocationTable
+import org.ksharp.common.io.LocationTableBuilder
+import org.ksharp.common.io.OffsetBufferView
 import org.ksharp.common.io.bufferView
 import org.ksharp.common.io.newBufferWriter
+import org.ksharp.common.io.readLocationTable
 import org.ksharp.ir.*
 import org.ksharp.module.Impl
 import org.ksharp.module.prelude.preludeModule
@@ -15,6 +21,7 @@ import org.ksharp.typesystem.types.newParameterForTesting
 import org.ksharp.typesystem.types.toFunctionType
 import java.io.ByteArrayInputStream
 import java.io.ByteArrayOutputStream
+import java.util.concurrent.ForkJoinPool
 import java.util.concurrent.atomic.AtomicInteger
 
 private fun mockStringTable(items: ListBuilder<String>) = object : BinaryTable {
@@ -30,31 +37,44 @@ private fun mockStringTable(items: ListBuilder<String>) = object : BinaryTable {
 
 private fun mockStringTableView(items: List<String>) = BinaryTableView { index -> items[index] }
 
+private fun LocationTableBuilder.toLocationTable(): LocationTable =
+    ByteArrayOutputStream().also(::writeTo).toByteArray().bufferView().readLocationTable()
+
 private inline fun <reified T : IrNode> T.shouldBeSerializable() {
-    val stringPool = listBuilder<String>()
-    val buffer = newBufferWriter()
-    val table = mockStringTable(stringPool)
-    val output = ByteArrayOutputStream()
-    serialize(buffer, table)
-    buffer.transferTo(output)
-    val stringPoolView = mockStringTableView(stringPool.build())
-    val input = ByteArrayInputStream(output.toByteArray())
-    val lookup = functionLookup()
-    this.shouldBe(input.bufferView {
-        it.readIrNode(lookup, { _ -> null }, stringPoolView).also(::println)
-    })
+    Encoding.entries.forEach { encoding ->
+        val stringPool = listBuilder<String>()
+        val locations = LocationTableBuilder()
+        val buffer = newBufferWriter(encoding, locations)
+        val table = mockStringTable(stringPool)
+        val output = ByteArrayOutputStream()
+        serialize(buffer, table)
+        buffer.transferTo(output)
+        val stringPoolView = mockStringTableView(stringPool.build())
+        val input = ByteArrayInputStream(output.toByteArray())
+        val lookup = functionLookup()
+        this.shouldBe(input.bufferView {
+            OffsetBufferView(0, it, encoding, locations.toLocationTable())
+                .readIrNode(lookup, { _ -> null }, stringPoolView).also(::println)
+        })
+    }
 }
 
 private fun IrModule.shouldBeSerializableModule() {
-    val output = ByteArrayOutputStream()
-    writeTo(output)
-    val input = ByteArrayInputStream(output.toByteArray())
-    this.shouldBe(input.bufferView {
-        it.readIrModule { _ -> null }.also(::println)
-    })
+    Encoding.entries.forEach { encoding ->
+        val output = ByteArrayOutputStream()
+        val locations = LocationTableBuilder()
+        writeTo(output, encoding, locations)
+        this.shouldBe(
+            output.toByteArray()
+                .readIrModule({ _ -> null }, locations = locations.toLocationTable())
+                .also(::println)
+        )
+    }
 }
 
 class NodeSerializerTest : StringSpec({
+    val pool = ForkJoinPool(4)
+    afterSpec { pool.shutdown() }
     val location = Location(Line(1) to Offset(1), Line(1) to Offset(5))
     val attributes = setOf(CommonAttribute.Native, CommonAttribute.Public)
     "IrInteger test" {
@@ -134,6 +154,58 @@ class NodeSerializerTest : StringSpec({
         IrPow(attributes, IrInteger(1, location), IrInteger(2, location), location)
             .shouldBeSerializable()
     }
+    "IrLt test" {
+        IrLt(attributes, IrInteger(1, location), IrInteger(2, location), location)
+            .shouldBeSerializable()
+    }
+    "IrLe test" {
+        IrLe(attributes, IrInteger(1, location), IrInteger(2, location), location)
+            .shouldBeSerializable()
+    }
+    "IrGe test" {
+        IrGe(attributes, IrInteger(1, location), IrInteger(2, location), location)
+            .shouldBeSerializable()
+    }
+    "IrGt test" {
+        IrGt(attributes, IrInteger(1, location), IrInteger(2, location), location)
+            .shouldBeSerializable()
+    }
+    "IrEq test" {
+        IrEq(attributes, IrInteger(1, location), IrInteger(2, location), location)
+            .shouldBeSerializable()
+    }
+    "IrNotEq test" {
+        IrNotEq(attributes, IrInteger(1, location), IrInteger(2, location), location)
+            .shouldBeSerializable()
+    }
+    "IrEquals test" {
+        IrEquals(attributes, IrInteger(1, location), IrInteger(2, location), location)
+            .shouldBeSerializable()
+    }
+    "IrNotEquals test" {
+        IrNotEquals(attributes, IrInteger(1, location), IrInteger(2, location), location)
+            .shouldBeSerializable()
+    }
+    "IrBitAnd test" {
+        IrBitAnd(attributes, IrInteger(1, location), IrInteger(2, location), location)
+            .shouldBeSerializable()
+    }
+    "IrBitOr test" {
+        IrBitOr(attributes, IrInteger(1, location), IrInteger(2, location), location)
+            .shouldBeSerializable()
+    }
+    "IrBitXor test" {
+        IrBitXor(attributes, IrInteger(1, location), IrInteger(2, location), location)
+            .shouldBeSerializable()
+    }
+    "IrBitShr test" {
+        IrBitShr(attributes, IrInteger(1, location), IrInteger(2, location), location)
+            .shouldBeSerializable()
+    }
+    "IrBitShl test" {
+        IrBitShl(attributes, IrInteger(1, location), IrInteger(2, location), location)
+            .shouldBeSerializable()
+    }
     "IrArithmeticCall Test" {
         IrArithmeticCall("+", IrSum(attributes, IrInteger(1, location), IrInteger(2, location), location))
             .shouldBeSerializable()
@@ -147,11 +219,11 @@ class NodeSerializerTest : StringSpec({
             .shouldBeSerializable()
     }
     "IrArg captured test" {
-        IrArg(attributes, "Test", 1, location)
+        IrArg(attributes, 0, 1, location)
             .shouldBeSerializable()
     }
     "IrVar captured test" {
-        IrVar(attributes, "Test", 1, location)
+        IrVar(attributes, 0, 1, location)
             .shouldBeSerializable()
     }
     "IrIf test" {
@@ -175,6 +247,60 @@ class NodeSerializerTest : StringSpec({
         )
             .shouldBeSerializable()
     }
+    "IrModule symbols directory" {
+        val output = ByteArrayOutputStream()
+        IrModule(
+            listOf(
+                IrFunction(attributes, "one/0", listOf(), 1, IrInteger(1, location), location),
+                IrFunction(attributes, "two/0", listOf(), 1, IrInteger(2, location), location)
+            ),
+            mapOf(),
+            mapOf()
+        ).writeTo(output)
+        output.toByteArray().readIrModule { _ -> null }.symbols.apply {
+            shouldBeInstanceOf<IrSymbols>()
+            symbolNames.shouldBe(listOf("one/0", "two/0"))
+            symbol("two/0").shouldBe(
+                IrFunction(attributes, "two/0", listOf(), 1, IrInteger(2, location), location)
+            )
+            symbol("three/0").shouldBe(null)
+        }
+    }
+    "Compact encoding reduces the size of the code" {
+        val module = IrModule(
+            (1..100).map {
+                IrFunction(attributes, "f$it/0", listOf(), 1, IrInteger(it.toLong(), location), location)
+            },
+            mapOf(),
+            mapOf()
+        )
+        val fixed = ByteArrayOutputStream().also { module.writeTo(it) }.size()
+        val compact = ByteArrayOutputStream().also { module.writeTo(it, Encoding.Compact) }.size()
+        (fixed - compact).shouldBe(100 * 2 * 12)
+    }
+    "Release encoding moves the locations to the location table" {
+        val functions = (1..10).map {
+            IrFunction(attributes, "f$it/0", listOf(), 1, IrInteger(it.toLong(), location), location)
+        }
+        val module = IrModule(functions, mapOf(), mapOf())
+        val fixed = ByteArrayOutputStream().also { module.writeTo(it) }.size()
+        val locations = LocationTableBuilder()
+        val release = ByteArrayOutputStream().also { module.writeTo(it, Encoding.Release, locations) }.toByteArray()
+        locations.size.shouldBe(20)
+        (fixed - release.size).shouldBe(20 * 15)
+        release.readIrModule { _ -> null }.symbols.first().location.shouldBe(Location.NoProvided)
+        release.readIrModule({ _ -> null }, locations = locations.toLocationTable())
+            .symbols.shouldBe(functions)
+    }
+    "IrModule symbols decoded in parallel" {
+        val output = ByteArrayOutputStream()
+        val functions = (1..100).map {
+            IrFunction(attributes, "f$it/0", listOf(), 1, IrInteger(it.toLong(), location), location)
+        }
+        IrModule(functions, mapOf(), mapOf()).writeTo(output)
+        output.toByteArray().readIrModule({ _ -> null }, pool).symbols
+            .shouldBe(functions)
+    }
     "IrModule test" {
         IrModule(
             listOf(
@@ -313,6 +439,16 @@ class NodeSerializerTest : StringSpec({
             location
         ).shouldBeSerializable()
     }
+    "IrLambda captured context Test" {
+        IrLambda(
+            attributes,
+            listOf(IrCaptureVar("a", IrVar(attributes, NoCaptured, 1, location))),
+            listOf("b"),
+            4,
+            IrVar(attributes, 0, 0, location),
+            location
+        ).shouldBeSerializable()
+    }
     "IrLambdaCall Test" {
         IrLambdaCall(
             attributes,
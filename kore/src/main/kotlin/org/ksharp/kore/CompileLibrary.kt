@@ -1,10 +1,13 @@
 package org.ksharp.kore
 
 import org.ksharp.common.Location
+import org.ksharp.compiler.loader.BuildScheduler
 import org.ksharp.compiler.loader.DirectorySourceLoader
 import org.ksharp.compiler.loader.ModuleLoader
+import org.ksharp.compiler.loader.writeBundle
 import org.ksharp.module.prelude.preludeModule
 import java.io.File
+import java.io.OutputStream
 import java.nio.file.Files
 import java.nio.file.Path
 import kotlin.io.path.listDirectoryEntries
@@ -23,20 +26,20 @@ val Path.ksFiles: Sequence<Path>
                 }.flatten()
         ).flatten()
 
-fun main() {
-    val root = File("").absoluteFile.toPath()
-    val sources = root.resolve("src/main/resources/")
-    val sourcesLoader = DirectorySourceLoader(
-        sources.resolve("sources"),
-        sources
-    )
-    val moduleLoader = ModuleLoader(sourcesLoader, preludeModule)
-    val sourcesDir = sources.resolve("sources")
-    sourcesDir.ksFiles.forEach { p ->
-        val moduleName = p.relativeTo(sourcesDir).toString().let {
+/**
+ * Compiles the kore modules in the sources directory and writes them to a bundle,
+ * the binaries of each module are written to the binaries directory
+ */
+fun Path.compileKoreLibrary(binaries: Path, output: OutputStream) {
+    val moduleLoader = ModuleLoader(DirectorySourceLoader(this, binaries), preludeModule)
+    val modules = ksFiles.map { p ->
+        p.relativeTo(this).toString().let {
             it.substring(0, it.length - ".ks".length)
         }
-        moduleLoader.load(moduleName, "").mapLeft {
+    }.toList()
+    val results = BuildScheduler(moduleLoader).build(modules)
+    results.forEach { (moduleName, result) ->
+        result.mapLeft {
             it.forEach { e ->
                 println("$e (${moduleName}.ks: ${(e.location ?: Location.NoProvided).start.first.value})")
             }
@@ -44,4 +47,14 @@ fun main() {
             println("Compiled $moduleName")
         }
     }
+    results.values.mapNotNull { it.valueOrNull }.writeBundle(output)
+}
+
+fun main() {
+    val root = File("").absoluteFile.toPath()
+    val sources = root.resolve("src/main/resources/")
+    Files.newOutputStream(sources.resolve("kore.ksa")).use { output ->
+        sources.resolve("sources").compileKoreLibrary(sources, output)
+    }
+    println("Bundle kore.ksa")
 }
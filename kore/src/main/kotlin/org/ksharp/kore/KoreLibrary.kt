@@ -0,0 +1,28 @@
+package org.ksharp.kore
+
+import org.ksharp.common.io.BufferView
+import org.ksharp.common.io.bufferView
+import org.ksharp.common.io.mappedBufferView
+import org.ksharp.compiler.loader.BundleSourceLoader
+import org.ksharp.compiler.loader.SourceLoader
+import java.nio.file.Path
+
+private object KoreLibrary
+
+/**
+ * The kore.ksa bundle written by compile-kore-library, it is mapped once when the classpath is a directory
+ * and read once from the jar otherwise
+ */
+private val koreBundle: BufferView? by lazy(LazyThreadSafetyMode.SYNCHRONIZED) {
+    KoreLibrary::class.java.getResource("/kore.ksa")?.let { url ->
+        if (url.protocol == "file") Path.of(url.toURI()).mappedBufferView()
+        else url.openStream().use { it.readBytes() }.bufferView()
+    }
+}
+
+/**
+ * Loads the kore modules from the kore bundle, the other binaries and the sources are loaded by this loader.
+ * Without the bundle in the classpath the loader is returned as it is
+ */
+fun SourceLoader.withKoreLibrary(): SourceLoader =
+    koreBundle?.let { BundleSourceLoader(it, this) } ?: this
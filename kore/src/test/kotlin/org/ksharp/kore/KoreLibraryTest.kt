@@ -0,0 +1,29 @@
+package org.ksharp.kore
+
+import io.kotest.core.spec.style.StringSpec
+import io.kotest.engine.spec.tempdir
+import io.kotest.matchers.booleans.shouldBeTrue
+import org.ksharp.common.io.ArtifactKind
+import org.ksharp.common.io.isValidArtifact
+import org.ksharp.common.io.mappedBufferView
+import org.ksharp.test.shouldBeRight
+import java.io.File
+import java.nio.file.Files
+
+class KoreLibraryTest : StringSpec({
+    "Load kore from the library bundle" {
+        val binaries = tempdir().toPath()
+        val bundle = binaries.resolve("kore.ksa")
+        Files.newOutputStream(bundle).use {
+            File("src/main/resources/sources").absoluteFile.toPath().compileKoreLibrary(binaries, it)
+        }
+        val library = bundle.mappedBufferView()
+        library.isValidArtifact(ArtifactKind.Bundle).shouldBeTrue()
+        """
+            import strings as s
+            fn = s.length "Hello"
+        """.trimIndent()
+            .evaluateFunction(library, "fn/0")
+            .shouldBeRight(5)
+    }
+})
@@ -1,5 +1,7 @@
 package org.ksharp.kore
 
+import org.ksharp.common.io.BufferView
+import org.ksharp.compiler.loader.BundleSourceLoader
 import org.ksharp.compiler.loader.ModuleLoader
 import org.ksharp.compiler.loader.SourceLoader
 import org.ksharp.module.prelude.preludeModule
@@ -28,10 +30,19 @@ private fun sources(code: String): SourceLoader {
     }
 }
 
-fun String.evaluateFunction(function: String, vararg arguments: Any) =
-    ModuleLoader(sources(this), preludeModule)
+private fun SourceLoader.evaluateFunction(function: String, vararg arguments: Any) =
+    ModuleLoader(this, preludeModule)
         .load("irTest", "")
         .map {
             it.executable
                 .execute(function, *arguments)
         }
+
+fun String.evaluateFunction(function: String, vararg arguments: Any) =
+    sources(this).withKoreLibrary().evaluateFunction(function, *arguments)
+
+/**
+ * Evaluates the function with the kore modules loaded from the library bundle
+ */
+fun String.evaluateFunction(library: BufferView, function: String, vararg arguments: Any) =
+    BundleSourceLoader(library, sources(this)).evaluateFunction(function, *arguments)
@@ -1,15 +1,22 @@
 package org.ksharp.lsp.actions
 
 import org.ksharp.nodes.NodeData
-import org.ksharp.parser.ksharp.parseModuleAsNodeSequence
+import org.ksharp.parser.ksharp.IncrementalModuleParser
 
 val ParseAction = ActionId<List<NodeData>>("ParseAction")
-fun ActionCatalog.parseAction(builder: ActionsGraphBuilder<List<NodeData>>) = action<String, List<NodeData>>(
-    ParseAction,
-    listOf()
-) {
-    execution { _, content ->
-        content.parseModuleAsNodeSequence()
+
+/**
+ * The actions are created per document, so the parser keeps the declarations of the last version of the document
+ */
+fun ActionCatalog.parseAction(builder: ActionsGraphBuilder<List<NodeData>>): Action<String, List<NodeData>> {
+    val parser = IncrementalModuleParser()
+    return action(
+        ParseAction,
+        listOf()
+    ) {
+        execution { _, content ->
+            parser.parse(content)
+        }
+        graphBuilder(builder)
     }
-    graphBuilder(builder)
 }
@@ -3,6 +3,7 @@ package org.ksharp.module.bytecode
 import org.ksharp.common.HandlePromise
 import org.ksharp.common.io.*
 import org.ksharp.common.mapBuilder
+import org.ksharp.common.mapChunks
 import org.ksharp.common.put
 import org.ksharp.module.FunctionInfo
 import org.ksharp.module.FunctionInfoImpl
@@ -11,15 +12,13 @@ import org.ksharp.typesystem.attributes.readAttributes
 import org.ksharp.typesystem.attributes.writeTo
 import org.ksharp.typesystem.serializer.readListOfTypes
 import org.ksharp.typesystem.serializer.writeTo
+import java.util.concurrent.ForkJoinPool
 
 fun FunctionInfo.writeTo(buffer: BufferWriter, table: BinaryTable) {
-    newBufferWriter().apply {
-        add(0) // 0
-        attributes.writeTo(this, table) // 4
-        add(table.add(name)) // 8
-        types.writeTo(this, table) //12
-        set(0, size)
-        transferTo(buffer)
+    buffer.sized {
+        attributes.writeTo(it, table) // 4
+        it.add(table.add(name)) // 8
+        types.writeTo(it, table) //12
     }
 }
 
@@ -66,3 +65,36 @@ fun BufferView.readFunctionInfoTable(
     }
     return types.build()
 }
+
+/**
+ * Positions of the table entries, only the entry sizes are read
+ */
+private fun BufferView.functionInfoPositions(): IntArray {
+    val positions = IntArray(readInt(0))
+    var position = 4
+    positions.indices.forEach {
+        positions[it] = position
+        position += readInt(position + 4) + 4
+    }
+    return positions
+}
+
+/**
+ * The entries are decoded in chunks on the pool, the types are resolved through the handle
+ * once the type system is decoded
+ */
+fun BufferView.readFunctionInfoTable(
+    handle: HandlePromise<TypeSystem>,
+    table: BinaryTableView,
+    pool: ForkJoinPool
+): Map<String, FunctionInfo> {
+    val positions = functionInfoPositions()
+    val types = mapBuilder<String, FunctionInfo>()
+    pool.mapChunks(positions.size) { index ->
+        val typeBuffer = bufferFrom(positions[index])
+        table[typeBuffer.readInt(0)] to typeBuffer.bufferFrom(4).readFunctionInfo(handle, table)
+    }.forEach { (key, function) ->
+        types.put(key, function)
+    }
+    return types.build()
+}
@@ -10,13 +10,10 @@ import org.ksharp.typesystem.types.Type
 
 
 fun Impl.writeTo(buffer: BufferWriter, table: BinaryTable) {
-    newBufferWriter().apply {
-        add(0) // 0
-        add(table.add(module)) //4
-        add(table.add(trait)) // 8
-        type.writeTo(this, table) //12
-        set(0, size)
-        transferTo(buffer)
+    buffer.sized {
+        it.add(table.add(module)) //4
+        it.add(table.add(trait)) // 8
+        type.writeTo(it, table) //12
     }
 }
 
@@ -2,7 +2,11 @@ package org.ksharp.module.bytecode
 
 import org.ksharp.common.HandlePromise
 import org.ksharp.common.handlePromise
+import org.ksharp.common.io.ArtifactKind
+import org.ksharp.common.io.BinaryTableView
 import org.ksharp.common.io.BufferView
+import org.ksharp.common.io.artifactSections
+import org.ksharp.common.io.artifactOf
 import org.ksharp.common.io.newBufferWriter
 import org.ksharp.module.ModuleInfo
 import org.ksharp.typesystem.TypeSystem
@@ -11,38 +15,63 @@ import org.ksharp.typesystem.attributes.writeTo
 import org.ksharp.typesystem.serializer.readTypeSystem
 import org.ksharp.typesystem.serializer.writeTo
 import java.io.OutputStream
+import java.nio.channels.Channels
+import java.nio.channels.WritableByteChannel
+import java.util.concurrent.Callable
+import java.util.concurrent.ForkJoinPool
 
-fun ModuleInfo.writeTo(output: OutputStream) {
-    val stringPool = StringPoolBuilder()
-    val dependencies = newBufferWriter().apply {
-        dependencies.writeTo(this, stringPool)
+/**
+ * Sections: dependencies | type system | functions | impls | string pool.
+ * The string pool is the last section, so each section is written as soon as it is encoded.
+ * With a shared string pool (e.g. the modules of a bundle) the pool section is not written, its owner writes it once
+ */
+fun ModuleInfo.writeTo(channel: WritableByteChannel, sharedStringPool: StringPoolBuilder? = null) {
+    val stringPool = sharedStringPool ?: StringPoolBuilder()
+    artifactOf(ArtifactKind.Module, channel) { artifact ->
+        artifact.section(newBufferWriter().also { dependencies.writeTo(it, stringPool) })
+        artifact.section(newBufferWriter().also { typeSystem.writeTo(it, stringPool) })
+        artifact.section(newBufferWriter().also { functions.writeTo(it, stringPool) })
+        artifact.section(newBufferWriter().also { impls.writeTo(it, stringPool) })
+        if (sharedStringPool == null) stringPool.writeTo(artifact)
     }
-    val typeSystem = newBufferWriter().apply {
-        typeSystem.writeTo(this, stringPool)
-    }
-    val functionTable = newBufferWriter().apply {
-        functions.writeTo(this, stringPool)
-    }
-    val implsTable = newBufferWriter().apply {
-        impls.writeTo(this, stringPool)
-    }
-    val header = newBufferWriter()
-    header.add(stringPool.size) // 0
-    header.add(dependencies.size) // 4
-    header.add(typeSystem.size) // 8
-    header.add(functionTable.size) // 12
-
-    header.transferTo(output)
-    stringPool.writeTo(output)
-    dependencies.transferTo(output)
-    typeSystem.transferTo(output)
-    functionTable.transferTo(output)
-    implsTable.transferTo(output)
 }
 
+fun ModuleInfo.writeTo(output: OutputStream, sharedStringPool: StringPoolBuilder? = null) =
+    writeTo(Channels.newChannel(output), sharedStringPool)
+
+/**
+ * When a pool is provided the function table is decoded in parallel, while the type system is decoded.
+ * With intern the names are interned, so the names repeated across modules share one instance
+ */
 fun BufferView.readModuleInfo(
     parent: TypeSystem? = null,
-    handle: HandlePromise<TypeSystem> = handlePromise()
+    handle: HandlePromise<TypeSystem> = handlePromise(),
+    pool: ForkJoinPool? = null,
+    intern: Boolean = false
+): ModuleInfo =
+    artifactSections(ArtifactKind.Module)
+        ?.let { sections ->
+            val (dependencies, typeSystem, functions, impls) = sections
+            decodeModuleInfo(
+                sharedStringPool ?: StringPoolView(sections[4], intern),
+                dependencies,
+                typeSystem,
+                functions,
+                impls,
+                parent,
+                handle,
+                pool
+            )
+        } ?: readLegacyModuleInfo(parent, handle, pool, intern)
+
+/**
+ * Modules written before the artifact header, the sections sizes are in a header and the string pool is first
+ */
+private fun BufferView.readLegacyModuleInfo(
+    parent: TypeSystem?,
+    handle: HandlePromise<TypeSystem>,
+    pool: ForkJoinPool?,
+    intern: Boolean
 ): ModuleInfo {
     val stringPoolSize = readInt(0)
     val dependenciesSize = readInt(4)
@@ -50,16 +79,35 @@ fun BufferView.readModuleInfo(
     val functionsSize = readInt(12)
     val offset = 16
 
-    val stringPool = StringPoolView(bufferFrom(offset))
-    val dependencies = bufferFrom(offset + stringPoolSize).readMapOfStrings(stringPool)
-    val typeSystem =
-        bufferFrom(offset + dependenciesSize + stringPoolSize).readTypeSystem(stringPool, parent, handle)
-    val functions =
-        bufferFrom(offset + dependenciesSize + stringPoolSize + typeSystemSize).readFunctionInfoTable(
-            typeSystem.handle,
-            stringPool
-        )
-    val impls = bufferFrom(offset + dependenciesSize + stringPoolSize + typeSystemSize + functionsSize)
-        .readImpls(typeSystem.handle, stringPool)
+    return decodeModuleInfo(
+        StringPoolView(bufferFrom(offset), intern),
+        bufferFrom(offset + stringPoolSize),
+        bufferFrom(offset + dependenciesSize + stringPoolSize),
+        bufferFrom(offset + dependenciesSize + stringPoolSize + typeSystemSize),
+        bufferFrom(offset + dependenciesSize + stringPoolSize + typeSystemSize + functionsSize),
+        parent,
+        handle,
+        pool
+    )
+}
+
+private fun decodeModuleInfo(
+    stringPool: BinaryTableView,
+    dependenciesBuffer: BufferView,
+    typeSystemBuffer: BufferView,
+    functionsBuffer: BufferView,
+    implsBuffer: BufferView,
+    parent: TypeSystem?,
+    handle: HandlePromise<TypeSystem>,
+    pool: ForkJoinPool?
+): ModuleInfo {
+    val parallelFunctions = pool?.submit(Callable {
+        functionsBuffer.readFunctionInfoTable(handle, stringPool, pool)
+    })
+    val dependencies = dependenciesBuffer.readMapOfStrings(stringPool)
+    val typeSystem = typeSystemBuffer.readTypeSystem(stringPool, parent, handle)
+    val functions = parallelFunctions?.join()
+        ?: functionsBuffer.readFunctionInfoTable(typeSystem.handle, stringPool)
+    val impls = implsBuffer.readImpls(typeSystem.handle, stringPool)
     return ModuleInfo(dependencies, typeSystem, functions, impls)
 }
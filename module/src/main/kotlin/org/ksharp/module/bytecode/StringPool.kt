@@ -1,6 +1,7 @@
 package org.ksharp.module.bytecode
 
 import org.ksharp.common.get
+import org.ksharp.common.io.ArtifactWriter
 import org.ksharp.common.io.BinaryTable
 import org.ksharp.common.io.BinaryTableView
 import org.ksharp.common.io.BufferView
@@ -39,6 +40,14 @@ class StringPoolBuilder : BinaryTable {
             lastPosition
         }
 
+    /**
+     * Adds the pool as a section of the artifact
+     */
+    fun writeTo(artifact: ArtifactWriter) {
+        indices.set(0, lastPosition + 1)
+        artifact.section(indices, pool)
+    }
+
     fun writeTo(output: OutputStream) {
         indices.set(0, lastPosition + 1)
         indices.transferTo(output)
@@ -46,19 +55,33 @@ class StringPoolBuilder : BinaryTable {
     }
 }
 
+/**
+ * Each string is decoded once and cached by its position.
+ * When intern is true the strings are interned, so the same name share one instance across modules.
+ * The view can be shared by decoding threads, a race only decodes a string twice
+ */
 class StringPoolView(
-    private val buffer: BufferView
+    private val buffer: BufferView,
+    private val intern: Boolean = false
 ) : BinaryTableView {
 
     val size: Int = buffer.readInt(0)
 
     private val poolIndex: Int = size * StringPositionSize + Size
 
-    override operator fun get(index: Int): String {
+    private val strings = arrayOfNulls<String>(size)
+
+    private fun decode(index: Int): String {
         val nIndex = Size + (index * StringPositionSize)
         val start = buffer.readInt(nIndex)
         val size = buffer.readInt(nIndex + Size)
-        return buffer.readString(this.poolIndex + start, size)
+        return buffer.readString(this.poolIndex + start, size).let {
+            if (intern) it.intern()
+            else it
+        }
     }
 
+    override operator fun get(index: Int): String =
+        strings[index] ?: decode(index).also { strings[index] = it }
+
 }
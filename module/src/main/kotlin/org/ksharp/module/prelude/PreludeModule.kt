@@ -40,14 +40,21 @@ private fun createKernelModule(): ModuleInfo = kernelTypeSystem
 
 val kernelModule = createKernelModule()
 
-val preludeModule: ModuleInfo
-    get() =
-        String.Companion::class.java.getResourceAsStream("/org/ksharp/module/prelude.ksm")!!
-            .use { input ->
-                input.bufferView {
-                    val kernelTypeSystem = kernelTypeSystem.value
-                    it.readModuleInfo(kernelTypeSystem).let { module ->
-                        module.copy(impls = module.impls + kernelTypeSystem.preludeImpls())
-                    }
+private fun readPreludeModule(): ModuleInfo =
+    String.Companion::class.java.getResourceAsStream("/org/ksharp/module/prelude.ksm")!!
+        .use { input ->
+            input.bufferView {
+                val kernelTypeSystem = kernelTypeSystem.value
+                it.readModuleInfo(kernelTypeSystem).let { module ->
+                    module.copy(impls = module.impls + kernelTypeSystem.preludeImpls())
                 }
             }
+        }
+
+/**
+ * Prelude module decoded from the precompiled prelude.ksm, it is decoded once on first access
+ * and shared, the module info and its types are immutable
+ */
+val preludeModule: ModuleInfo by lazy(LazyThreadSafetyMode.SYNCHRONIZED) {
+    readPreludeModule()
+}
@@ -13,13 +13,14 @@ import org.ksharp.typesystem.types.newParameter
 import org.ksharp.typesystem.types.type
 import java.io.ByteArrayInputStream
 import java.io.ByteArrayOutputStream
+import java.util.concurrent.ForkJoinPool
 
-private fun ModuleInfo.shouldBeSerializable() {
+private fun ModuleInfo.shouldBeSerializable(pool: ForkJoinPool? = null) {
     val output = ByteArrayOutputStream()
     writeTo(output)
     val input = ByteArrayInputStream(output.toByteArray())
     input.bufferView {
-        it.readModuleInfo(null, MockHandlePromise())
+        it.readModuleInfo(null, MockHandlePromise(), pool)
     }.apply {
         this@shouldBeSerializable.dependencies.shouldBe(dependencies)
         this@shouldBeSerializable.functions.shouldBe(functions)
@@ -29,6 +30,8 @@ private fun ModuleInfo.shouldBeSerializable() {
 }
 
 class ModuleInfoSerializerTest : StringSpec({
+    val pool = ForkJoinPool(4)
+    afterSpec { pool.shutdown() }
     val ts = typeSystem { }.value
     "Serialize ModuleInfo" {
         ModuleInfo(
@@ -60,4 +63,20 @@ class ModuleInfoSerializerTest : StringSpec({
             )
         ).shouldBeSerializable()
     }
+    "Serialize ModuleInfo decoding the function table in parallel" {
+        ModuleInfo(
+            mapOf(),
+            typeSystem {
+                type(setOf(CommonAttribute.Public), "Int")
+            }.value,
+            (1..200).associate {
+                "sum$it/2" to functionInfo(
+                    setOf(CommonAttribute.Public),
+                    "sum$it",
+                    listOf(ts.newParameter(), ts.newParameter())
+                )
+            },
+            setOf()
+        ).shouldBeSerializable(pool)
+    }
 })
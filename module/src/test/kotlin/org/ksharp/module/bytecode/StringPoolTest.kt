@@ -3,6 +3,8 @@ package org.ksharp.module.bytecode
 import io.kotest.core.spec.style.StringSpec
 import io.kotest.matchers.nulls.shouldNotBeNull
 import io.kotest.matchers.shouldBe
+import io.kotest.matchers.types.shouldBeSameInstanceAs
+import io.kotest.matchers.types.shouldNotBeSameInstanceAs
 import org.ksharp.common.io.bufferView
 import java.io.ByteArrayInputStream
 import java.io.ByteArrayOutputStream
@@ -26,4 +28,23 @@ class StringPoolTest : StringSpec({
             }
         }.shouldNotBeNull()
     }
-})
\ No newline at end of file
+    "StringPoolView decodes each string once" {
+        val output = ByteArrayOutputStream()
+        StringPoolBuilder().apply {
+            add("Hello")
+            add("World")
+            writeTo(output)
+        }
+        val bytes = output.toByteArray()
+        val first = ByteArrayInputStream(bytes).bufferView { view ->
+            StringPoolView(view, intern = true).run {
+                this[1].shouldBeSameInstanceAs(this[1])
+                this[1]
+            }
+        }
+        ByteArrayInputStream(bytes).bufferView { view ->
+            StringPoolView(view, intern = true)[1].shouldBeSameInstanceAs(first)
+            StringPoolView(view)[1].shouldNotBeSameInstanceAs(first)
+        }
+    }
+})
@@ -2,6 +2,7 @@ package org.ksharp.module.prelude
 
 import io.kotest.core.spec.style.StringSpec
 import io.kotest.matchers.shouldBe
+import io.kotest.matchers.types.shouldBeSameInstanceAs
 import org.ksharp.module.FunctionInfo
 
 private val FunctionInfo.representation: String
@@ -12,6 +13,9 @@ private val FunctionInfo.representation: String
     }"
 
 class PreludeModuleTest : StringSpec({
+    "Prelude module is decoded once" {
+        preludeModule.shouldBeSameInstanceAs(preludeModule)
+    }
     "Test prelude module" {
         preludeModule.functions
             .values
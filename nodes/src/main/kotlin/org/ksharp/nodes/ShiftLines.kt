@@ -0,0 +1,283 @@
+package org.ksharp.nodes
+
+import org.ksharp.common.Location
+import org.ksharp.common.cast
+import org.ksharp.common.shiftLines
+
+private fun List<Location>.shiftLines(delta: Int): List<Location> = map { it.shiftLines(delta) }
+
+private fun <T : NodeData> List<T>.shiftNodes(delta: Int): List<T> = map { it.shiftLines(delta).cast<T>() }
+
+private fun TypeExpression.shiftLines(delta: Int): TypeExpression = (this as NodeData).shiftLines(delta).cast()
+
+@JvmName("shiftTypeExpressions")
+private fun List<TypeExpression>.shiftLines(delta: Int): List<TypeExpression> = map { it.shiftLines(delta) }
+
+private fun Any.shiftAnyLines(delta: Int): Any = when (this) {
+    is Location -> shiftLines(delta)
+    is NodeData -> shiftLines(delta)
+    is List<*> -> map { it?.shiftAnyLines(delta) }
+    else -> this
+}
+
+private fun AnnotationNode.shiftAnnotation(delta: Int) = copy(
+    attrs = attrs.mapValues { it.value.shiftAnyLines(delta) },
+    location = location.shiftLines(delta),
+    locations = locations.copy(
+        altLocation = locations.altLocation.shiftLines(delta),
+        name = locations.name.shiftLines(delta),
+        attrs = locations.attrs.map {
+            it.copy(
+                keyLocation = it.keyLocation?.shiftLines(delta),
+                valueLocation = it.valueLocation.shiftAnyLines(delta),
+                operator = it.operator?.shiftLines(delta)
+            )
+        }
+    )
+)
+
+private fun List<AnnotationNode>?.shiftAnnotations(delta: Int) = this?.map { it.shiftAnnotation(delta) }
+
+private fun FunctionNode.shiftFunction(delta: Int) = copy(
+    annotations = annotations.shiftAnnotations(delta),
+    expression = expression.shiftLines(delta),
+    location = location.shiftLines(delta),
+    locations = locations.copy(
+        nativeLocation = locations.nativeLocation.shiftLines(delta),
+        pubLocation = locations.pubLocation.shiftLines(delta),
+        name = locations.name.shiftLines(delta),
+        parameters = locations.parameters.shiftLines(delta),
+        assignOperator = locations.assignOperator.shiftLines(delta)
+    )
+)
+
+private fun TraitFunctionNode.shiftTraitFunction(delta: Int) = copy(
+    annotations = annotations.shiftAnnotations(delta),
+    type = type.shiftLines(delta),
+    location = location.shiftLines(delta),
+    locations = locations.copy(
+        name = locations.name.shiftLines(delta),
+        operator = locations.operator.shiftLines(delta)
+    )
+)
+
+private fun TraitFunctionsNode.shiftTraitFunctions(delta: Int) = copy(
+    definitions = definitions.map { it.shiftTraitFunction(delta) },
+    functions = functions.map { it.shiftFunction(delta) }
+)
+
+/**
+ * Copy of the node with all its locations moved [delta] lines, used to reuse the nodes of a declaration
+ * that moved to other lines without parsing it again
+ */
+fun NodeData.shiftLines(delta: Int): NodeData = if (delta == 0) this else when (this) {
+    is AnnotationNode -> shiftAnnotation(delta)
+    is FunctionCallNode -> copy(
+        arguments = arguments.shiftNodes(delta),
+        location = location.shiftLines(delta)
+    )
+
+    is FunctionNode -> shiftFunction(delta)
+    is LambdaNode -> copy(
+        expression = expression.shiftLines(delta),
+        location = location.shiftLines(delta),
+        locations = locations.copy(
+            assignOperator = locations.assignOperator.shiftLines(delta),
+            parameters = locations.parameters.shiftLines(delta)
+        )
+    )
+
+    is IfNode -> copy(
+        condition = condition.shiftLines(delta),
+        trueExpression = trueExpression.shiftLines(delta),
+        falseExpression = falseExpression.shiftLines(delta),
+        location = location.shiftLines(delta),
+        locations = locations.copy(
+            ifLocation = locations.ifLocation.shiftLines(delta),
+            thenLocation = locations.thenLocation.shiftLines(delta),
+            elseLocation = locations.elseLocation.shiftLines(delta)
+        )
+    )
+
+    is ImplNode -> copy(
+        forType = forType.shiftLines(delta),
+        functions = functions.map { it.shiftFunction(delta) },
+        location = location.shiftLines(delta),
+        locations = locations.copy(
+            traitName = locations.traitName.shiftLines(delta),
+            forKeyword = locations.forKeyword.shiftLines(delta),
+            assignOperator = locations.assignOperator.shiftLines(delta)
+        )
+    )
+
+    is ImportNode -> copy(
+        location = location.shiftLines(delta),
+        locations = locations.copy(
+            importLocation = locations.importLocation.shiftLines(delta),
+            moduleNameBegin = locations.moduleNameBegin.shiftLines(delta),
+            moduleNameEnd = locations.moduleNameEnd.shiftLines(delta),
+            asLocation = locations.asLocation.shiftLines(delta),
+            keyLocation = locations.keyLocation.shiftLines(delta)
+        )
+    )
+
+    is LetExpressionNode -> copy(
+        matches = matches.shiftNodes(delta),
+        expression = expression.shiftLines(delta),
+        location = location.shiftLines(delta),
+        locations = locations.copy(
+            letLocation = locations.letLocation.shiftLines(delta),
+            thenLocation = locations.thenLocation.shiftLines(delta)
+        )
+    )
+
+    is LiteralMapEntryNode -> copy(
+        key = key.shiftLines(delta),
+        value = value.shiftLines(delta),
+        location = location.shiftLines(delta),
+        locations = locations.copy(
+            keyValueOperatorLocation = locations.keyValueOperatorLocation.shiftLines(delta)
+        )
+    )
+
+    is LiteralValueNode -> copy(location = location.shiftLines(delta))
+    is LiteralCollectionNode -> copy(
+        values = values.shiftNodes(delta),
+        location = location.shiftLines(delta)
+    )
+
+    is UnitNode -> copy(location = location.shiftLines(delta))
+    is MatchExpressionNode -> copy(
+        expression = expression.shiftLines(delta),
+        branches = branches.shiftNodes(delta),
+        location = location.shiftLines(delta),
+        locations = locations.copy(
+            matchLocation = locations.matchLocation.shiftLines(delta),
+            withLocation = locations.withLocation.shiftLines(delta)
+        )
+    )
+
+    is MatchListValueNode -> copy(
+        head = head.shiftNodes(delta),
+        tail = tail.shiftLines(delta),
+        location = location.shiftLines(delta),
+        locations = locations.copy(
+            tailSeparatorLocation = locations.tailSeparatorLocation.shiftLines(delta)
+        )
+    )
+
+    is MatchConditionValueNode -> copy(
+        left = left.shiftLines(delta),
+        right = right.shiftLines(delta),
+        location = location.shiftLines(delta)
+    )
+
+    is MatchAssignNode -> copy(
+        match = match.shiftLines(delta),
+        expression = expression.shiftLines(delta),
+        location = location.shiftLines(delta)
+    )
+
+    is MatchExpressionBranchNode -> copy(
+        match = match.shiftLines(delta),
+        expression = expression.shiftLines(delta),
+        location = location.shiftLines(delta)
+    )
+
+    is OperatorNode -> copy(
+        left = left.shiftLines(delta),
+        right = right.shiftLines(delta),
+        location = location.shiftLines(delta)
+    )
+
+    is TraitFunctionNode -> shiftTraitFunction(delta)
+    is TraitFunctionsNode -> shiftTraitFunctions(delta)
+    is TraitNode -> copy(
+        annotations = annotations.shiftAnnotations(delta),
+        definition = definition.shiftTraitFunctions(delta),
+        location = location.shiftLines(delta),
+        locations = locations.copy(
+            internalLocation = locations.internalLocation.shiftLines(delta),
+            traitLocation = locations.traitLocation.shiftLines(delta),
+            name = locations.name.shiftLines(delta),
+            params = locations.params.shiftLines(delta),
+            assignOperatorLocation = locations.assignOperatorLocation.shiftLines(delta)
+        )
+    )
+
+    is LabelTypeNode -> copy(
+        expr = expr.shiftLines(delta),
+        location = location.shiftLines(delta)
+    )
+
+    is UnitTypeNode -> copy(location = location.shiftLines(delta))
+    is ConcreteTypeNode -> copy(location = location.shiftLines(delta))
+    is ParameterTypeNode -> copy(location = location.shiftLines(delta))
+    is ParametricTypeNode -> copy(
+        variables = variables.shiftLines(delta),
+        location = location.shiftLines(delta)
+    )
+
+    is FunctionTypeNode -> copy(
+        params = params.shiftLines(delta),
+        location = location.shiftLines(delta),
+        locations = locations.copy(separators = locations.separators.shiftLines(delta))
+    )
+
+    is TupleTypeNode -> copy(
+        types = types.shiftLines(delta),
+        location = location.shiftLines(delta),
+        locations = locations.copy(separators = locations.separators.shiftLines(delta))
+    )
+
+    is ConstrainedTypeNode -> copy(
+        type = type.shiftLines(delta),
+        expression = expression.shiftLines(delta),
+        location = location.shiftLines(delta),
+        locations = locations.copy(separator = locations.separator.shiftLines(delta))
+    )
+
+    is InvalidSetTypeNode -> copy(location = location.shiftLines(delta))
+    is SetElement -> copy(
+        expression = expression.shiftLines(delta),
+        location = location.shiftLines(delta)
+    )
+
+    is UnionTypeNode -> copy(
+        types = types.shiftLines(delta),
+        location = location.shiftLines(delta),
+        locations = locations.copy(separators = locations.separators.shiftLines(delta))
+    )
+
+    is IntersectionTypeNode -> copy(
+        types = types.shiftLines(delta),
+        location = location.shiftLines(delta),
+        locations = locations.copy(separators = locations.separators.shiftLines(delta))
+    )
+
+    is TypeNode -> copy(
+        annotations = annotations.shiftAnnotations(delta),
+        expr = expr.shiftLines(delta),
+        location = location.shiftLines(delta),
+        locations = locations.copy(
+            internalLocation = locations.internalLocation.shiftLines(delta),
+            typeLocation = locations.typeLocation.shiftLines(delta),
+            name = locations.name.shiftLines(delta),
+            params = locations.params.shiftLines(delta),
+            assignOperatorLocation = locations.assignOperatorLocation.shiftLines(delta)
+        )
+    )
+
+    is TypeDeclarationNode -> copy(
+        annotations = annotations.shiftAnnotations(delta),
+        type = type.shiftLines(delta),
+        location = location.shiftLines(delta),
+        locations = locations.copy(
+            name = locations.name.shiftLines(delta),
+            separator = locations.separator.shiftLines(delta),
+            params = locations.params.shiftLines(delta)
+        )
+    )
+
+    else -> this
+}
@@ -2,54 +2,211 @@ package org.ksharp.parser
 
 import java.io.Closeable
 import java.io.Reader
-import java.io.StringReader
+import java.nio.CharBuffer
 
-data class TextToken(
-    val text: String,
+/**
+ * Value returned by [CharStream.readCode] when there are no more characters
+ */
+const val EndOfStream = -1
+
+private const val ReaderBufferSize = 8192
+
+/**
+ * Characters of a slice of the source, reading them doesn't copy the source
+ */
+private class TextSlice(
+    private val source: CharSequence,
+    private val start: Int,
+    private val end: Int
+) : CharSequence {
+    override val length: Int get() = end - start
+
+    override fun get(index: Int): Char = source[start + index]
+
+    override fun subSequence(startIndex: Int, endIndex: Int): CharSequence =
+        source.subSequence(start + startIndex, start + endIndex)
+
+    override fun toString(): String = source.subSequence(start, end).toString()
+}
+
+/**
+ * Text between [startOffset] and [endOffset] (exclusive index, calculated as: startOffset + token length).
+ *
+ * Tokens from a [CharSequence] stream are a slice of the source, the text is copied the first time it is read.
+ * Use [textSequence] to inspect the token without copying the text
+ */
+class TextToken internal constructor(
+    private val source: CharSequence,
+    private val sourceStart: Int,
+    private val sourceEnd: Int,
     val startOffset: Int,
-    // Exclusive index, calculated as: startOffset + token length
     val endOffset: Int
-)
-
-class CharStream internal constructor(
-    private val reader: Reader
-) : Closeable by reader {
-    private val cache = StringBuilder()
-    private var offset = 0
-    private var pendingOffset = 0
-    private var consumed = false
+) {
+    private var cachedText: String? = null
+
+    constructor(text: String, startOffset: Int, endOffset: Int) : this(
+        text,
+        0,
+        text.length,
+        startOffset,
+        endOffset
+    ) {
+        cachedText = text
+    }
 
-    fun read(): Char? =
-        if (pendingOffset == 0) {
-            val nc = reader.read().takeIf { it != -1 }?.toChar()
-            if (nc != null) {
-                cache.append(nc)
-            } else {
-                consumed = true
-            }
-            nc
-        } else {
-            val c = cache[cache.length - pendingOffset]
-            pendingOffset -= 1
-            c
+    val text: String
+        get() = cachedText ?: source.subSequence(sourceStart, sourceEnd).toString().also {
+            cachedText = it
         }
 
+    val textSequence: CharSequence
+        get() = cachedText ?: TextSlice(source, sourceStart, sourceEnd)
+
+    val length: Int get() = sourceEnd - sourceStart
+
+    /**
+     * Token from the start of this token to the end of [end], when both are adjacent slices of the same source
+     * the result is a slice too
+     */
+    fun span(end: TextToken): TextToken =
+        if (source === end.source && sourceEnd == end.sourceStart) {
+            TextToken(source, sourceStart, end.sourceEnd, startOffset, end.endOffset)
+        } else TextToken("$text${end.text}", startOffset, end.endOffset)
+
+    private fun sameText(other: TextToken): Boolean {
+        if (length != other.length) return false
+        for (index in 0 until length) {
+            if (source[sourceStart + index] != other.source[other.sourceStart + index]) return false
+        }
+        return true
+    }
+
+    /**
+     * Compares the characters in the source, the text is not copied
+     */
+    override fun equals(other: Any?): Boolean =
+        this === other || (other is TextToken
+                && startOffset == other.startOffset
+                && endOffset == other.endOffset
+                && sameText(other))
+
+    /**
+     * Same hash as the text, calculated from the characters in the source
+     */
+    override fun hashCode(): Int {
+        var hash = 0
+        for (index in sourceStart until sourceEnd) {
+            hash = 31 * hash + source[index].code
+        }
+        return (hash * 31 + startOffset) * 31 + endOffset
+    }
+
+    override fun toString(): String = "TextToken(text=$text, startOffset=$startOffset, endOffset=$endOffset)"
+}
+
+interface CharStream : Closeable {
+    /**
+     * Returns the code of the next character or [EndOfStream], the character is not boxed
+     */
+    fun readCode(): Int
+
+    fun read(): Char? = readCode().let { if (it == EndOfStream) null else it.toChar() }
+
+    /**
+     * Returns the characters read since the last token, except the last [skip] characters
+     * that are read again by the next token
+     */
+    fun token(skip: Int): TextToken?
+}
 
-    fun token(skip: Int): TextToken? {
-        if (cache.isEmpty()) return null
-        val cSkip = (if (consumed && pendingOffset == 0) {
+/**
+ * Positions in both streams are absolute: the current token starts at [start]
+ * and [position] is the next character to read
+ */
+private abstract class BaseCharStream(offset: Int) : CharStream {
+    protected var start = offset
+    protected var position = offset
+    private var consumed = false
+
+    protected abstract val limit: Int
+
+    protected abstract fun charAt(index: Int): Char
+
+    protected abstract fun fill(): Boolean
+
+    protected abstract fun textToken(start: Int, end: Int): TextToken
+
+    override fun readCode(): Int {
+        if (position == limit && !fill()) {
+            consumed = true
+            return EndOfStream
+        }
+        return charAt(position++).code
+    }
+
+    override fun token(skip: Int): TextToken? {
+        if (start == limit) return null
+        val cSkip = (if (consumed && position == limit) {
             skip - 1
         } else skip).coerceAtLeast(0)
-        val len = cache.length - pendingOffset - cSkip
-        val text = cache.substring(0, len)
-        val result = TextToken(text, offset, offset + len)
-        offset += len
-        pendingOffset += cSkip
-        cache.delete(0, len)
-        return result
+        val end = position - cSkip
+        return textToken(start, end).also {
+            start = end
+            position = end
+        }
+    }
+}
+
+/**
+ * Reads the window between [start] and [end] of the content, the token offsets are offsets of the content
+ */
+private class CharSequenceStream(
+    private val content: CharSequence,
+    start: Int,
+    end: Int
+) : BaseCharStream(start) {
+    override val limit: Int = end
+
+    override fun charAt(index: Int): Char = content[index]
+
+    override fun fill(): Boolean = false
+
+    override fun textToken(start: Int, end: Int): TextToken = TextToken(content, start, end, start, end)
+
+    override fun close() {}
+}
+
+/**
+ * Reads the characters in blocks, the characters before the current token are discarded
+ * only when the buffer is full
+ */
+private class ReaderStream(private val reader: Reader) : BaseCharStream(0), Closeable by reader {
+    private var buffer = CharArray(ReaderBufferSize)
+    private var bufferStart = 0
+    override var limit: Int = 0
+
+    override fun charAt(index: Int): Char = buffer[index - bufferStart]
+
+    override fun fill(): Boolean {
+        val used = limit - bufferStart
+        if (used == buffer.size) {
+            val keep = limit - start
+            if (keep > buffer.size / 2) buffer = buffer.copyOf(buffer.size * 2)
+            System.arraycopy(buffer, start - bufferStart, buffer, 0, keep)
+            bufferStart = start
+        }
+        val read = reader.read(buffer, limit - bufferStart, buffer.size - (limit - bufferStart))
+        if (read <= 0) return false
+        limit += read
+        return true
     }
+
+    override fun textToken(start: Int, end: Int): TextToken =
+        TextToken(String(buffer, start - bufferStart, end - start), start, end)
 }
 
-fun Reader.charStream(): CharStream = CharStream(this)
+fun Reader.charStream(): CharStream = ReaderStream(this)
+
+fun CharSequence.charStream(start: Int = 0, end: Int = length): CharStream = CharSequenceStream(this, start, end)
 
-fun String.charStream(): CharStream = StringReader(this).charStream()
+fun CharArray.charStream(): CharStream = CharBuffer.wrap(this).charStream()
@@ -19,11 +19,15 @@ class Lexer<V> internal constructor(
 ) {
     fun token(type: TokenType, skip: Int) = LexerToken(type, stream.token(skip)!!)
     fun nextChar(): Char? = stream.read()
+
+    /**
+     * Returns the code of the next character or [EndOfStream], used by the lexer loops to avoid boxing
+     */
+    fun nextCode(): Int = stream.readCode()
     fun next(): LexerToken? =
-        nextChar()?.let { c ->
-            factory(c) ?: run {
-                token(BaseTokenType.Unknown, 0)
-            }
+        nextCode().let { c ->
+            if (c == EndOfStream) null
+            else factory(c.toChar()) ?: token(BaseTokenType.Unknown, 0)
         }
 }
 
@@ -54,11 +58,7 @@ fun <V> BaseLexerIterator<V>.collapseTokens(vararg excludeTokens: TokenType): Ba
             }
             lastToken = next()
             if (token.type == lastToken!!.type && !tokenTypes.contains(token.type)) {
-                token = token.collapse(
-                    token.type,
-                    "${token.text}${lastToken!!.text}",
-                    lastToken!!
-                )
+                token = token.collapse(token.type, lastToken!!)
                 continue
             }
             break
@@ -71,10 +71,14 @@ fun <S> BaseLexerIterator<S>.filterWhiteSpace(): BaseLexerIterator<S> = filter {
     it.type != BaseTokenType.WhiteSpace
 }
 
-fun <V> TokenLexerIterator<V>.toLogicalLexerToken(): BaseLexerIterator<V> =
+/**
+ * [firstLine] and [firstLineOffset] are the line and offset where the tokens start,
+ * used when only a part of a document is lexed
+ */
+fun <V> TokenLexerIterator<V>.toLogicalLexerToken(firstLine: Int = 1, firstLineOffset: Int = 0): BaseLexerIterator<V> =
     object : LexerIterator<Token, V> {
-        private var startPosition: Position = Line(1) to Offset(0)
-        private var lineOffset: Int = 0
+        private var startPosition: Position = Line(firstLine) to Offset(0)
+        private var lineOffset: Int = firstLineOffset
 
         override val lastEndOffset: Int get() = this@toLogicalLexerToken.lastEndOffset
 
@@ -87,23 +91,30 @@ fun <V> TokenLexerIterator<V>.toLogicalLexerToken(): BaseLexerIterator<V> =
         override fun next(): LogicalLexerToken = with(this@toLogicalLexerToken.next()) {
             if (type == BaseTokenType.NewLine || type == BaseTokenType.IgnoreNewLine) {
                 startPosition = Line(startPosition.first.value.inc()) to Offset(0)
-                lineOffset = startOffset + (if (text.startsWith("\r\n")) 2 else 1)
+                lineOffset = startOffset + (if (textSequence.startsWith("\r\n")) 2 else 1)
             } else {
                 startPosition = startPosition.first to Offset(startOffset - lineOffset)
             }
             LogicalLexerToken(
                 this,
                 startPosition = startPosition,
-                endPosition = startPosition.first to Offset(startPosition.second.value + text.length)
+                endPosition = startPosition.first to Offset(startPosition.second.value + textSequence.length)
             )
         }
     }
 
 
-internal fun String.indentLength() =
-    replace("\n", "").replace("\r", "") //normalize newline to zero spaces
-        .replace("\t", "  ") //normalize tab to two spaces
-        .length
+internal fun CharSequence.indentLength(): Int {
+    var length = 0
+    for (c in this) {
+        length += when (c) {
+            '\n', '\r' -> 0 //normalize newline to zero spaces
+            '\t' -> 2 //normalize tab to two spaces
+            else -> 1
+        }
+    }
+    return length
+}
 
 fun <V> BaseLexerIterator<V>.excludeIgnoreNewLineTokens(): BaseLexerIterator<V> = filter {
     it.type != BaseTokenType.IgnoreNewLine
@@ -115,7 +126,7 @@ fun <V> BaseLexerIterator<V>.collapseNewLines(): BaseLexerIterator<V> {
         while (hasNext()) {
             val token = next()
             lastIndent = if (token.type == BaseTokenType.NewLine) {
-                val length = token.text.indentLength()
+                val length = token.textSequence.indentLength()
                 if (length == lastIndent) continue
                 else length
             } else -1
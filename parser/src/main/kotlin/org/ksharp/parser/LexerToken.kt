@@ -8,12 +8,22 @@ interface TokenType
 interface Token : LexerValue, LexerDocumentPosition {
     fun collapse(newType: TokenType, text: String, end: Token): Token
 
+    /**
+     * Collapse with the text from this token to the end of [end]
+     */
+    fun collapse(newType: TokenType, end: Token): Token = collapse(newType, "$text${end.text}", end)
+
     fun new(type: TokenType): Token
 }
 
 interface LexerValue {
     val text: String
     val type: TokenType
+
+    /**
+     * The text without materializing it as a String, use it to check the content of the token
+     */
+    val textSequence: CharSequence get() = text
 }
 
 interface LexerDocumentPosition {
@@ -37,9 +47,10 @@ data class LexerToken internal constructor(
     override val type: TokenType,
     private val token: TextToken
 ) : Token {
-    override val text: String = token.text
-    override val startOffset: Int = token.startOffset
-    override val endOffset: Int = token.endOffset
+    override val text: String get() = token.text
+    override val textSequence: CharSequence get() = token.textSequence
+    override val startOffset: Int get() = token.startOffset
+    override val endOffset: Int get() = token.endOffset
 
     override fun collapse(newType: TokenType, text: String, end: Token): Token {
         return copy(
@@ -52,6 +63,13 @@ data class LexerToken internal constructor(
         )
     }
 
+    override fun collapse(newType: TokenType, end: Token): Token =
+        when (end) {
+            is LexerToken -> copy(type = newType, token = token.span(end.token))
+            is LogicalLexerToken -> copy(type = newType, token = token.span(end.token.token))
+            else -> super.collapse(newType, end)
+        }
+
     override fun new(type: TokenType): Token = this.copy(type = type)
 }
 
@@ -71,6 +89,16 @@ data class LogicalLexerToken internal constructor(
         )
     }
 
+    override fun collapse(newType: TokenType, end: Token): Token {
+        val newToken = token.collapse(newType, end)
+        end as LexerLogicalPosition
+        return copy(
+            token = newToken as LexerToken,
+            startPosition = startPosition,
+            endPosition = end.endPosition
+        )
+    }
+
     override fun new(type: TokenType): Token = this.copy(token = token.copy(type = type))
 
 }
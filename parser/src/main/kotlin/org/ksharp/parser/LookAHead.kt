@@ -5,29 +5,75 @@ import org.ksharp.common.Error
 import org.ksharp.common.ErrorOrValue
 import org.ksharp.common.annotation.Mutable
 import org.ksharp.common.listBuilder
-import java.util.*
 
-private const val BufferSize: Int = 10
+private const val InitialBufferSize: Int = 16
+private const val InitialCheckpointsSize: Int = 8
 
 const val ConsumeTokens: Int = 0
 const val PreserveTokens: Int = -1
 
+/**
+ * Counters of the lookahead, subtract the snapshots taken before and after a grammar rule
+ * to know how much the rule backtracks. [maxDepth] is the deepest nesting of checkpoints so far
+ */
+data class LookAheadCounters(
+    val checkpoints: Int = 0,
+    val backtracks: Int = 0,
+    val rewoundTokens: Int = 0,
+    val rereadTokens: Int = 0,
+    val maxDepth: Int = 0
+) {
+    operator fun minus(other: LookAheadCounters) = LookAheadCounters(
+        checkpoints - other.checkpoints,
+        backtracks - other.backtracks,
+        rewoundTokens - other.rewoundTokens,
+        rereadTokens - other.rereadTokens,
+        maxDepth
+    )
+}
+
+@Mutable
+class LookAheadStats {
+    internal var checkpoints = 0
+    internal var backtracks = 0
+    internal var rewoundTokens = 0
+    internal var rereadTokens = 0
+    internal var maxDepth = 0
+
+    fun snapshot() = LookAheadCounters(checkpoints, backtracks, rewoundTokens, rereadTokens, maxDepth)
+}
 
+/**
+ * Tokens read while there are checkpoints are kept in a ring buffer that doubles its size when it is full.
+ * The indexes are absolute, [start] is the first token that a checkpoint can return to,
+ * the checkpoints are kept in an int stack
+ */
 internal class LookAheadCheckpoints {
-    private var buffer = arrayOfNulls<Token>(BufferSize)
-    private val checkPoints = Stack<Int>()
+    private var buffer = arrayOfNulls<Token>(InitialBufferSize)
+    private var mask = buffer.size - 1
+    private var checkPoints = IntArray(InitialCheckpointsSize)
+    private var depth = 0
 
     private var inCheckPoint = false
+    private var start = 0
     private var endIndex = 0
     private var currentIndex = 0
-    val checkpoints: Int get() = checkPoints.size
+
+    val stats = LookAheadStats()
+
+    val checkpoints: Int get() = depth
     fun addCheckpoint() {
-        checkPoints.push(currentIndex)
+        if (depth == checkPoints.size) {
+            checkPoints = checkPoints.copyOf(depth * 2)
+        }
+        checkPoints[depth++] = currentIndex
         inCheckPoint = true
+        stats.checkpoints += 1
+        if (depth > stats.maxDepth) stats.maxDepth = depth
     }
 
     fun removeCheckPoint(rewind: Int) {
-        val startIndex = checkPoints.pop()
+        val startIndex = checkPoints[--depth]
 
         when (rewind) {
             ConsumeTokens -> {
@@ -35,27 +81,37 @@ internal class LookAheadCheckpoints {
             }
 
             PreserveTokens -> {
+                backtrack(currentIndex - startIndex)
                 currentIndex = startIndex
             }
 
             else -> {
+                backtrack(rewind)
                 currentIndex -= rewind
                 trim()
             }
         }
     }
 
+    private fun backtrack(tokens: Int) {
+        if (tokens == 0) return
+        stats.backtracks += 1
+        stats.rewoundTokens += tokens
+    }
+
     fun next(fallback: () -> Token?): Token? =
         if (inCheckPoint) {
             if (currentIndex == endIndex) {
                 val result = fallback()
                 if (result != null) {
-                    addToBuffer(result)
+                    if (depth == 0) clear()
+                    else addToBuffer(result)
                 }
                 result
             } else {
-                val result = buffer[currentIndex++]
-                if (currentIndex == endIndex && checkPoints.isEmpty()) {
+                val result = buffer[currentIndex++ and mask]
+                stats.rereadTokens += 1
+                if (currentIndex == endIndex && depth == 0) {
                     clear()
                 }
                 result
@@ -64,28 +120,30 @@ internal class LookAheadCheckpoints {
 
 
     private fun addToBuffer(token: Token) {
-        val newSize = currentIndex + 1
-        if (newSize >= buffer.size) {
-            val newBuffer = arrayOfNulls<Token>(buffer.size + BufferSize)
-            System.arraycopy(buffer, 0, newBuffer, 0, buffer.size)
+        if (endIndex - start == buffer.size) {
+            val newBuffer = arrayOfNulls<Token>(buffer.size * 2)
+            val newMask = newBuffer.size - 1
+            for (index in start until endIndex) {
+                newBuffer[index and newMask] = buffer[index and mask]
+            }
             buffer = newBuffer
+            mask = newMask
         }
-        buffer[currentIndex] = token
-        currentIndex = newSize
-        endIndex = newSize
+        buffer[endIndex and mask] = token
+        endIndex += 1
+        currentIndex = endIndex
     }
 
     private fun clear() {
         currentIndex = 0
         endIndex = 0
+        start = 0
         inCheckPoint = false
     }
 
     private fun trim() {
-        if (checkPoints.isEmpty() && currentIndex != 0) {
-            endIndex -= currentIndex
-            System.arraycopy(buffer, currentIndex, buffer, 0, endIndex)
-            currentIndex = 0
+        if (depth == 0) {
+            start = currentIndex
         }
     }
 }
@@ -100,6 +158,8 @@ class LookAheadLexerState {
 
     private var enabled = false
 
+    val stats: LookAheadStats get() = checkpoints.stats
+
     fun <S> enable(
         lexer: BaseLexerIterator<S>
     ): BaseLexerIterator<S> =
@@ -257,7 +257,7 @@ fun <S> BaseLexerIterator<S>.consume(
     text: String,
     discardToken: Boolean = false
 ): ConsumeResult<S> = consume({
-    it.type == type && it.text == text
+    it.type == type && it.textSequence.contentEquals(text)
 }, discardToken)
 
 
@@ -285,7 +285,7 @@ fun <T, S> BaseLexerIterator<S>.ifConsume(
     discardToken: Boolean = false,
     block: (tokens: ConsumeResult<S>) -> ParserResult<T, S>
 ): ParserResult<T, S> = ifConsume({
-    it.type == type && it.text == text
+    it.type == type && it.textSequence.contentEquals(text)
 }, discardToken, block)
 
 fun <T, S> ConsumeResult<S>.thenIfConsume(
@@ -302,7 +302,7 @@ fun <T, S> ConsumeResult<S>.thenIfConsume(
     discardToken: Boolean = false,
     block: (tokens: ConsumeResult<S>) -> ParserResult<T, S>
 ): ParserResult<T, S> = thenIfConsume({
-    it.type == type && it.text == text
+    it.type == type && it.textSequence.contentEquals(text)
 }, discardToken, block)
 
 fun <S, T> ParserResult<T, S>.or(
@@ -366,7 +366,7 @@ fun <S> ConsumeResult<S>.then(
     text: String,
     discardToken: Boolean = false
 ) = then({
-    it.type == type && it.text == text
+    it.type == type && it.textSequence.contentEquals(text)
 }, {
     createExpectedTokenError(type, it)
 }, discardToken)
@@ -0,0 +1,74 @@
+package org.ksharp.parser.ksharp
+
+import org.ksharp.common.shiftLines
+import org.ksharp.nodes.NodeData
+import org.ksharp.nodes.shiftLines
+
+private class ParsedChunk(
+    val chunk: TopLevelChunk,
+    val nodes: List<NodeData>
+)
+
+private fun NodeData.moveLines(delta: Int): NodeData =
+    if (this is InvalidNode && delta != 0) InvalidNode(
+        tokens.map { it.copy(location = it.location.shiftLines(delta)) },
+        error.copy(location = error.location?.shiftLines(delta))
+    ) else shiftLines(delta)
+
+/**
+ * Parse a document that changes over time, only the top level declarations that changed are parsed again.
+ *
+ * The chunks before and after the edited region are kept when their text didn't change, the nodes of a chunk
+ * that moved to other lines (e.g. a new line was added above it) are moved to the new lines instead of parsed again.
+ * The chunks are found again only around the edited region, but the whole document is still compared
+ * with the previous version to find that region
+ */
+class IncrementalModuleParser {
+    private var content: String = ""
+    private var chunks: List<ParsedChunk> = emptyList()
+
+    /**
+     * Number of chunks parsed by the last call to [parse]
+     */
+    var parsedChunks: Int = 0
+        private set
+
+    private fun ParsedChunk.sameAs(newContent: String, newChunk: TopLevelChunk): Boolean =
+        chunk.length == newChunk.length
+                && content.regionMatches(chunk.start, newContent, newChunk.start, chunk.length)
+
+    private fun ParsedChunk.movedTo(newChunk: TopLevelChunk): ParsedChunk =
+        (newChunk.line - chunk.line).let { delta ->
+            ParsedChunk(newChunk, if (delta == 0) nodes else nodes.map { it.moveLines(delta) })
+        }
+
+    @Synchronized
+    fun parse(newContent: String): List<NodeData> {
+        val newChunks = newContent.topLevelChunks(content, chunks.map { it.chunk })
+        val maxReused = minOf(chunks.size, newChunks.size)
+        var prefix = 0
+        while (prefix < maxReused && chunks[prefix].sameAs(newContent, newChunks[prefix])) {
+            prefix += 1
+        }
+        var suffix = 0
+        while (suffix < maxReused - prefix
+            && chunks[chunks.size - 1 - suffix].sameAs(newContent, newChunks[newChunks.size - 1 - suffix])
+        ) {
+            suffix += 1
+        }
+        val parsed = newChunks.subList(prefix, newChunks.size - suffix).map {
+            ParsedChunk(it, newContent.parseTopLevelChunk(it))
+        }
+        val result = chunks.subList(0, prefix).zip(newChunks.subList(0, prefix)) { previous, chunk ->
+            previous.movedTo(chunk)
+        } + parsed + chunks.subList(chunks.size - suffix, chunks.size).zip(
+            newChunks.subList(newChunks.size - suffix, newChunks.size)
+        ) { previous, chunk ->
+            previous.movedTo(chunk)
+        }
+        content = newContent
+        chunks = result
+        parsedChunks = parsed.size
+        return result.flatMap { it.nodes }
+    }
+}
@@ -2,7 +2,6 @@ package org.ksharp.parser.ksharp
 
 import org.ksharp.common.Either
 import org.ksharp.parser.*
-import java.util.*
 
 interface Offset {
     val size: Int
@@ -32,17 +31,17 @@ private val EmptyOffset = OffsetImpl(0, true, OffsetType.Optional)
 
 class IndentationOffset {
 
-    private val offsets = Stack<OffsetImpl>()
-    val currentOffset: Offset get() = if (offsets.isEmpty()) EmptyOffset else offsets.peek()
+    private val offsets = ArrayDeque<OffsetImpl>()
+    val currentOffset: Offset get() = if (offsets.isEmpty()) EmptyOffset else offsets.last()
 
     private fun update(size: Int, sameResult: OffsetAction): OffsetAction {
         if (offsets.isEmpty()) {
             return OffsetAction.End
         }
 
-        val last = offsets.peek()
+        val last = offsets.last()
         if (last.size > size) {
-            return update(size, offsets.pop().type.action)
+            return update(size, offsets.removeLast().type.action)
         }
 
         if (last.size < size) {
@@ -60,8 +59,8 @@ class IndentationOffset {
 
     fun add(size: Int, type: OffsetType): Boolean {
         val (allowed, calculatedSize) = if (offsets.isEmpty()) true to size
-        else if (offsets.peek().size <= size) {
-            val last = offsets.peek()
+        else if (offsets.last().size <= size) {
+            val last = offsets.last()
             // avoid ambiguity
             if (last.type == OffsetType.Repeating && last.size == size) {
                 true to (size + 1)
@@ -69,23 +68,23 @@ class IndentationOffset {
         } else (false to 0)
 
         if (allowed) {
-            offsets.push(OffsetImpl(calculatedSize, false, type))
+            offsets.addLast(OffsetImpl(calculatedSize, false, type))
         }
         return allowed
     }
 
     fun addRelative(type: OffsetType) {
         val position = if (offsets.isEmpty()) 0 else {
-            offsets.peek().size + 1
+            offsets.last().size + 1
         }
-        offsets.push(OffsetImpl(position, false, type))
+        offsets.addLast(OffsetImpl(position, false, type))
     }
 
     fun update(size: Int) = update(size, OffsetAction.Same)
 
     fun remove(offset: Offset) {
-        if (offsets.isNotEmpty() && offsets.peek() === offset) {
-            offsets.pop()
+        if (offsets.isNotEmpty() && offsets.last() === offset) {
+            offsets.removeLast()
         }
     }
 }
@@ -131,7 +130,7 @@ private fun KSharpLexerIterator.addIndentationOffset(
 }
 
 private fun Token.sameAsOffset(offset: Offset) =
-    type == BaseTokenType.NewLine && text.indentLength() == offset.size
+    type == BaseTokenType.NewLine && textSequence.indentLength() == offset.size
 
 private fun <T> T.discardOffset(lexer: KSharpLexerIterator, offset: Offset): T {
     val lookAhead = lexer.state.lookAHeadState.checkpoint()
@@ -166,7 +165,7 @@ fun KSharpLexerIterator.enableIndentationOffset(): KSharpLexerIterator {
         while (hasNext()) {
             val token = next()
             if (token.type == BaseTokenType.NewLine) {
-                val indentLength = token.text.indentLength()
+                val indentLength = token.textSequence.indentLength()
                 lexerState.lineOffset.add(token.newLineStartOffset)
                 val result = indentationOffset.update(indentLength)
                 if (result == OffsetAction.Same && indentLength != 0) continue
@@ -74,34 +74,57 @@ enum class KSharpTokenType : TokenType {
     UnitLambda
 }
 
-private val mappings = mapOf(
-    '@' to KSharpTokenType.Alt,
-    ',' to KSharpTokenType.Comma,
-    '[' to KSharpTokenType.OpenBracket,
-    ']' to KSharpTokenType.CloseBracket,
-    ')' to KSharpTokenType.CloseParenthesis,
-    '{' to KSharpTokenType.OpenCurlyBraces,
-    '}' to KSharpTokenType.CloseCurlyBraces
-)
+private const val AsciiSize = 128
+
+private val mappings = arrayOfNulls<KSharpTokenType>(AsciiSize).apply {
+    this['@'.code] = KSharpTokenType.Alt
+    this[','.code] = KSharpTokenType.Comma
+    this['['.code] = KSharpTokenType.OpenBracket
+    this[']'.code] = KSharpTokenType.CloseBracket
+    this[')'.code] = KSharpTokenType.CloseParenthesis
+    this['{'.code] = KSharpTokenType.OpenCurlyBraces
+    this['}'.code] = KSharpTokenType.CloseCurlyBraces
+}
+
+private const val OperatorClass = 1
+private const val HexDigitClass = 2
+private const val DecimalDigitClass = 4
+private const val OctalDigitClass = 8
+private const val BinaryDigitClass = 16
+private const val EscapeCharacterClass = 32
+private const val LetterClass = 64
+
+/**
+ * Classes of the ascii characters, a character can belong to several classes
+ */
+private val charClasses = IntArray(AsciiSize).apply {
+    fun mark(characters: String, charClass: Int) = characters.forEach {
+        this[it.code] = this[it.code] or charClass
+    }
+    mark("+-*/%><=!&$#^?.\\|:", OperatorClass)
+    mark("0123456789abcdefABCDEF", HexDigitClass)
+    mark("0123456789", DecimalDigitClass)
+    mark("01234567", OctalDigitClass)
+    mark("01", BinaryDigitClass)
+    mark("t'\"rnf\\b", EscapeCharacterClass)
+    mark("abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ", LetterClass)
+}
 
-private val operators = "+-*/%><=!&$#^?.\\|:".toSet()
-private val hexLetterDigit = "0123456789abcdefABCDEF".toSet()
-private val decimalDigit = "0123456789".toSet()
-private val octalLetterDigit = "01234567".toSet()
-private val binaryDigit = "01".toSet()
-private val escapeCharacters = "t'\"rnf\\b".toSet()
+private fun Char.hasClass(charClass: Int) = code < AsciiSize && (charClasses[code] and charClass) != 0
 
-fun Char.isLetter() = isLowerCase() || isUpperCase() || isTitleCase()
+fun Char.isLetter() =
+    if (code < AsciiSize) hasClass(LetterClass)
+    else isLowerCase() || isUpperCase() || isTitleCase()
 
-fun Char.isDigit() = decimalDigit.contains(this)
+fun Char.isDigit() = hasClass(DecimalDigitClass)
 
-fun Char.isEscapeCharacter() = escapeCharacters.contains(this)
+fun Char.isEscapeCharacter() = hasClass(EscapeCharacterClass)
 
 fun Char.isNewLine() = this == '\n' || this == '\r'
 
 fun Char.isSpace() = this == ' ' || this == '\t'
 
-fun Char.isOperator() = operators.contains(this)
+fun Char.isOperator() = hasClass(OperatorClass)
 
 fun Char.isDot() = this == '.'
 
@@ -113,9 +136,10 @@ private inline fun KSharpLexer.ifChar(
     then: KSharpLexer.(Char) -> LexerToken,
     elseThen: KSharpLexer.(Char) -> LexerToken,
 ): LexerToken {
-    val c = nextChar() ?: return token(eofToken, 1)
-    if (c.predicate()) return then(c)
-    return elseThen(c)
+    val c = nextCode()
+    if (c == EndOfStream) return token(eofToken, 1)
+    if (c.toChar().predicate()) return then(c.toChar())
+    return elseThen(c.toChar())
 }
 
 private inline fun KSharpLexer.ifChar(
@@ -133,9 +157,10 @@ private inline fun KSharpLexer.loopChar(
     elseToken: KSharpLexer.(Char) -> LexerToken
 ): LexerToken {
     while (true) {
-        val c = this.nextChar() ?: return token(endToken, 1)
-        if (!c.predicate()) {
-            return elseToken(c)
+        val c = nextCode()
+        if (c == EndOfStream) return token(endToken, 1)
+        if (!c.toChar().predicate()) {
+            return elseToken(c.toChar())
         }
     }
 }
@@ -204,7 +229,9 @@ fun KSharpLexer.numberDifferentBase(c: Char): LexerToken? =
 fun KSharpLexer.number(firstLetterIsZero: Boolean): LexerToken {
     var started = false
     while (true) {
-        val c = this.nextChar() ?: return token(KSharpTokenType.Integer, 1)
+        val code = nextCode()
+        if (code == EndOfStream) return token(KSharpTokenType.Integer, 1)
+        val c = code.toChar()
         if (firstLetterIsZero && !started) {
             started = true
             val result = numberDifferentBase(c)
@@ -218,17 +245,19 @@ fun KSharpLexer.number(firstLetterIsZero: Boolean): LexerToken {
     }
 }
 
-private fun KSharpLexer.numberInDifferentBase(type: KSharpTokenType, expectedDigits: Set<Char>): LexerToken {
+private fun KSharpLexer.numberInDifferentBase(type: KSharpTokenType, digitClass: Int): LexerToken {
     var start = false
     var skip = 2
     while (true) {
-        val c = this.nextChar() ?: return if (start) token(
+        val code = nextCode()
+        if (code == EndOfStream) return if (start) token(
             type,
             1
         ) else token(KSharpTokenType.Integer, skip)
+        val c = code.toChar()
         skip += 1
         if (c == '_') continue
-        if (!expectedDigits.contains(c)) {
+        if (!c.hasClass(digitClass)) {
             if (!start) return token(KSharpTokenType.Integer, 1)
             return token(type, 1)
         }
@@ -236,17 +265,18 @@ private fun KSharpLexer.numberInDifferentBase(type: KSharpTokenType, expectedDig
     }
 }
 
-fun KSharpLexer.hexNumber(): LexerToken = numberInDifferentBase(KSharpTokenType.HexInteger, hexLetterDigit)
+fun KSharpLexer.hexNumber(): LexerToken = numberInDifferentBase(KSharpTokenType.HexInteger, HexDigitClass)
 
-fun KSharpLexer.binaryNumber(): LexerToken = numberInDifferentBase(KSharpTokenType.BinaryInteger, binaryDigit)
+fun KSharpLexer.binaryNumber(): LexerToken = numberInDifferentBase(KSharpTokenType.BinaryInteger, BinaryDigitClass)
 
-fun KSharpLexer.octalNumber(): LexerToken = numberInDifferentBase(KSharpTokenType.OctalInteger, octalLetterDigit)
+fun KSharpLexer.octalNumber(): LexerToken = numberInDifferentBase(KSharpTokenType.OctalInteger, OctalDigitClass)
 
 fun KSharpLexer.decimal(type: TokenType, skip: Int): LexerToken {
     var start = false
     while (true) {
-        val c = this.nextChar() ?: return token(if (start) KSharpTokenType.Float else type, if (start) 1 else skip)
-        if (!c.isDigit()) {
+        val c = nextCode()
+        if (c == EndOfStream) return token(if (start) KSharpTokenType.Float else type, if (start) 1 else skip)
+        if (!c.toChar().isDigit()) {
             if (!start) return token(type, skip)
             return token(KSharpTokenType.Float, 1)
         }
@@ -259,8 +289,8 @@ fun KSharpLexer.character(): LexerToken =
         loopChar({ !equals('\'') }, KSharpTokenType.Character)
     }) {
         if (it == '\'') token(KSharpTokenType.Character, 0)
-        else when (this.nextChar()) {
-            '\'' -> token(KSharpTokenType.Character, 0)
+        else when (nextCode()) {
+            '\''.code -> token(KSharpTokenType.Character, 0)
             else -> token(KSharpTokenType.Character, 1)
         }
     }
@@ -275,12 +305,18 @@ private class StringLexerInfo {
     var lastIsQuote: Boolean = false
         private set
 
-    fun process(c: Char) {
+    /**
+     * Returns false at the end of the stream
+     */
+    fun process(code: Int): Boolean {
+        if (code == EndOfStream) return false
+        val c = code.toChar()
         lastIsQuote = c == '"'
         isEscapeCharacter = c == '\\' && !isEscapeCharacter
         if (c == '"' && !isEscapeCharacter) {
             endQuotesRequired += if (!begin) 1 else -1
         }
+        return true
     }
 
     fun startStringContent() {
@@ -291,15 +327,15 @@ private class StringLexerInfo {
 
 fun KSharpLexer.string(): LexerToken {
     val info = StringLexerInfo()
-    info.process(this.nextChar() ?: return token(KSharpTokenType.String, 1))
-    info.process(this.nextChar() ?: return token(KSharpTokenType.String, 1))
+    if (!info.process(nextCode())) return token(KSharpTokenType.String, 1)
+    if (!info.process(nextCode())) return token(KSharpTokenType.String, 1)
 
     if (info.endQuotesRequired == 2) return token(KSharpTokenType.String, if (info.lastIsQuote) 0 else 1)
     val tokenType = if (info.endQuotesRequired == 3) KSharpTokenType.MultiLineString else KSharpTokenType.String
 
     info.startStringContent()
     while (info.endQuotesRequired > 0) {
-        info.process(this.nextChar() ?: return token(tokenType, 1))
+        if (!info.process(nextCode())) return token(tokenType, 1)
     }
     return token(tokenType, 0)
 }
@@ -307,13 +343,15 @@ fun KSharpLexer.string(): LexerToken {
 
 fun KSharpLexer.newLine(requestForNewLineChar: Boolean): LexerToken {
     if (requestForNewLineChar) {
-        val nc = nextChar()
-        if (nc != '\n' && nc?.isSpace() == false) {
+        val nc = nextCode()
+        if (nc != '\n'.code && nc != EndOfStream && !nc.toChar().isSpace()) {
             return token(BaseTokenType.NewLine, 1)
         }
     }
     while (true) {
-        val c = this.nextChar() ?: return token(BaseTokenType.NewLine, 1)
+        val code = nextCode()
+        if (code == EndOfStream) return token(BaseTokenType.NewLine, 1)
+        val c = code.toChar()
         if (c.isNewLine()) {
             return token(BaseTokenType.IgnoreNewLine, 1)
         }
@@ -328,11 +366,12 @@ fun KSharpLexer.openParenthesisOrOperatorFunction(): LexerToken {
     var skip = 0
     while (true) {
         skip += 1
-        val c = nextChar() ?: return token(KSharpTokenType.OpenParenthesis, skip)
-        if (c == ')' && skip > 1) {
+        val c = nextCode()
+        if (c == EndOfStream) return token(KSharpTokenType.OpenParenthesis, skip)
+        if (c == ')'.code && skip > 1) {
             return token(KSharpTokenType.OperatorFunctionName, 0)
         }
-        if (!c.isOperator()) {
+        if (!c.toChar().isOperator()) {
             return token(KSharpTokenType.OpenParenthesis, skip)
         }
     }
@@ -357,15 +396,17 @@ val kSharpTokenFactory: TokenFactory<KSharpLexerState> = { c ->
             isSpace() -> whiteSpace()
             isOperator() -> operator()
             shouldIgnore() -> token(KSharpTokenType.Ignore, 0)
-            else -> mappings[c]?.let {
+            code < AsciiSize -> mappings[code]?.let {
                 token(it, 0)
             }
+
+            else -> null
         }
     }
 }
 
 private fun isLambda(current: Token, newToken: Token): Boolean =
-    current.type == KSharpTokenType.Operator && current.text == "\\" && newToken.type == KSharpTokenType.LowerCaseWord
+    current.type == KSharpTokenType.Operator && current.textSequence.contentEquals("\\") && newToken.type == KSharpTokenType.LowerCaseWord
 
 private fun isUnitToken(current: Token, newToken: Token): Boolean =
     current.type == KSharpTokenType.OpenParenthesis && newToken.type == KSharpTokenType.CloseParenthesis
@@ -386,8 +427,8 @@ private fun KSharpLexerIterator.canCollapseTokens(current: Token, newToken: Toke
     return when (newToken.type) {
         KSharpTokenType.Operator -> {
             when {
-                !state.value.collapseAssignOperatorRule && newToken.text == "=" -> false
-                collapseDotOperatorRule || newToken.text != "." -> true
+                !state.value.collapseAssignOperatorRule && newToken.textSequence.contentEquals("=") -> false
+                collapseDotOperatorRule || !newToken.textSequence.contentEquals(".") -> true
                 else -> false
             }
         }
@@ -400,38 +441,31 @@ private fun KSharpLexerIterator.canCollapseTokens(current: Token, newToken: Toke
     }
 }
 
-private val operator11 = "*/%".asSequence().toSet()
-private val operator10 = "+-".asSequence().toSet()
-private val operator8 = "<>".asSequence().toSet()
-private val operator7 = "=!".asSequence().toSet()
-private val operator6 = "&".asSequence().toSet()
-private val operator5 = "^".asSequence().toSet()
-private val operator4 = "|".asSequence().toSet()
-private val operator1 = "$".asSequence().toSet()
-private val operator0 = ".".asSequence().toSet()
-
 /// https://docs.ksharp.org/rfc/syntax#operator-precedence
 private fun Token.mapOperatorToken(): Token = when (type) {
     KSharpTokenType.Operator -> {
+        val text = textSequence
         when {
-            text == "**" -> new(type = KSharpTokenType.Operator12)
-            text == "<<" || text == ">>" -> new(type = KSharpTokenType.Operator9)
-            text == "&&" -> new(type = KSharpTokenType.Operator3)
-            text == "||" -> new(type = KSharpTokenType.Operator2)
-            text == "=" -> new(type = KSharpTokenType.AssignOperator)
-            text == "\\->" -> new(type = KSharpTokenType.UnitLambda)
+            text.contentEquals("**") -> new(type = KSharpTokenType.Operator12)
+            text.contentEquals("<<") || text.contentEquals(">>") -> new(type = KSharpTokenType.Operator9)
+            text.contentEquals("&&") -> new(type = KSharpTokenType.Operator3)
+            text.contentEquals("||") -> new(type = KSharpTokenType.Operator2)
+            text.contentEquals("=") -> new(type = KSharpTokenType.AssignOperator)
+            text.contentEquals("\\->") -> new(type = KSharpTokenType.UnitLambda)
             text.isEmpty() -> this
 
-            operator11.contains(text.first()) -> new(type = KSharpTokenType.Operator11)
-            operator10.contains(text.first()) -> new(type = KSharpTokenType.Operator10)
-            operator8.contains(text.first()) -> new(type = KSharpTokenType.Operator8)
-            operator7.contains(text.first()) -> new(type = KSharpTokenType.Operator7)
-            operator6.contains(text.first()) -> new(type = KSharpTokenType.Operator6)
-            operator5.contains(text.first()) -> new(type = KSharpTokenType.Operator5)
-            operator4.contains(text.first()) -> new(type = KSharpTokenType.Operator4)
-            operator1.contains(text.first()) -> new(type = KSharpTokenType.Operator1)
-            operator0.contains(text.first()) -> new(type = KSharpTokenType.Operator0)
-            else -> this
+            else -> when (text.first()) {
+                '*', '/', '%' -> new(type = KSharpTokenType.Operator11)
+                '+', '-' -> new(type = KSharpTokenType.Operator10)
+                '<', '>' -> new(type = KSharpTokenType.Operator8)
+                '=', '!' -> new(type = KSharpTokenType.Operator7)
+                '&' -> new(type = KSharpTokenType.Operator6)
+                '^' -> new(type = KSharpTokenType.Operator5)
+                '|' -> new(type = KSharpTokenType.Operator4)
+                '$' -> new(type = KSharpTokenType.Operator1)
+                '.' -> new(type = KSharpTokenType.Operator0)
+                else -> this
+            }
         }
     }
 
@@ -532,11 +566,7 @@ fun KSharpLexerIterator.collapseKSharpTokens(): KSharpLexerIterator {
             }
 
             if (canCollapseTokens(token, nextToken)) {
-                token = token.collapse(
-                    KSharpTokenType.FunctionName,
-                    "${token.text}${nextToken.text}",
-                    nextToken
-                )
+                token = token.collapse(KSharpTokenType.FunctionName, nextToken)
                 continue
             }
 
@@ -552,10 +582,10 @@ fun KSharpLexerIterator.filterAndCollapseTokens() =
         .collapseKSharpTokens()
         .filterWhiteSpace()
 
-fun String.kSharpLexer() = lexer(KSharpLexerState(), charStream(), kSharpTokenFactory).filter {
+fun CharStream.kSharpLexer() = lexer(KSharpLexerState(), this, kSharpTokenFactory).filter {
     it.type != KSharpTokenType.Ignore
 }
 
-fun Reader.kSharpLexer() = lexer(KSharpLexerState(), charStream(), kSharpTokenFactory).filter {
-    it.type != KSharpTokenType.Ignore
-}
+fun String.kSharpLexer() = charStream().kSharpLexer()
+
+fun Reader.kSharpLexer() = charStream().kSharpLexer()
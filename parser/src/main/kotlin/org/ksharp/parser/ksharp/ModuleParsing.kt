@@ -23,7 +23,7 @@ data class InvalidNode(
 }
 
 private fun isTopLevelNewLine(token: Token): Boolean =
-    token.type == BaseTokenType.NewLine && token.text.indentLength() == 0
+    token.type == BaseTokenType.NewLine && token.textSequence.indentLength() == 0
 
 private fun KSharpConsumeResult.consumeInvalidTokens(error: Error): KSharpParserResult =
     thenLoop { t ->
@@ -117,3 +117,179 @@ fun KSharpLexerIterator.consumeModuleNodes(): List<NodeData> =
     consumeModuleNodesLogic().build {
         it.filterIsInstance<NodeData>()
     }.map { it.value }.valueOrNull ?: listOf()
+
+/**
+ * Source of the top level declarations between [start] and [end], [line] is the line where the chunk starts
+ */
+data class TopLevelChunk(
+    val start: Int,
+    val end: Int,
+    val line: Int
+) {
+    val length: Int get() = end - start
+}
+
+/**
+ * Scans from [index], that must be the start of a chunk in the [line]. The scan stops at the end of the source
+ * or at the first chunk that [canStop] accepts, that chunk is not included
+ */
+private class TopLevelScanner(
+    private val source: CharSequence,
+    private var index: Int = 0,
+    private var line: Int = 1,
+    private val canStop: (start: Int) -> Boolean = { false }
+) {
+    private val chunks = listBuilder<TopLevelChunk>()
+    private var chunkStart = index
+    var chunkLine = line
+        private set
+    private var chunkHasDeclaration = false
+    private var lastIsAnnotation = false
+    var stopped = false
+        private set
+
+    private fun current(offset: Int = 0): Char? = (index + offset).let {
+        if (it < source.length) source[it] else null
+    }
+
+    private fun advance() {
+        val c = source[index++]
+        if (c == '\n' || (c == '\r' && current() != '\n')) line += 1
+    }
+
+    private fun skipString() {
+        val quotes = if (current(1) == '"' && current(2) == '"') 3 else 1
+        repeat(quotes) { advance() }
+        if (quotes == 1 && current() == '"') {
+            advance()
+            return
+        }
+        var escaped = false
+        while (index < source.length) {
+            val c = source[index]
+            if (c == '"' && !escaped && (quotes == 1 || (current(1) == '"' && current(2) == '"'))) {
+                repeat(quotes) { advance() }
+                return
+            }
+            escaped = c == '\\' && !escaped
+            advance()
+        }
+    }
+
+    private fun skipCharacter() {
+        advance()
+        if (current() == '\\') {
+            while (index < source.length && source[index] != '\'') advance()
+        } else if (index < source.length) advance()
+        if (current() == '\'') advance()
+    }
+
+    private fun lineStart() {
+        val c = current() ?: return
+        if (c.isSpace() || c.isNewLine()) return
+        if (chunkHasDeclaration && !lastIsAnnotation) {
+            chunks.add(TopLevelChunk(chunkStart, index, chunkLine))
+            chunkStart = index
+            chunkLine = line
+            stopped = canStop(index)
+        }
+        chunkHasDeclaration = true
+        lastIsAnnotation = c == '@'
+    }
+
+    fun scan(): List<TopLevelChunk> {
+        lineStart()
+        while (index < source.length && !stopped) {
+            when (source[index]) {
+                '"' -> skipString()
+                '\'' -> skipCharacter()
+                else -> {
+                    val lastLine = line
+                    advance()
+                    if (line != lastLine) lineStart()
+                }
+            }
+        }
+        if (!stopped && chunkStart < source.length) chunks.add(TopLevelChunk(chunkStart, source.length, chunkLine))
+        return chunks.build()
+    }
+}
+
+/**
+ * Split the source in chunks that start at the lines with a token in the column 0,
+ * the annotations stay in the chunk of the declaration that follows them.
+ * Strings are skipped, so a multiline string is not split
+ */
+fun CharSequence.topLevelChunks(): List<TopLevelChunk> = TopLevelScanner(this).scan()
+
+private fun CharSequence.commonPrefixLength(other: CharSequence): Int {
+    val max = minOf(length, other.length)
+    var index = 0
+    while (index < max && this[index] == other[index]) index += 1
+    return index
+}
+
+private fun CharSequence.commonSuffixLength(other: CharSequence, max: Int): Int {
+    var index = 0
+    while (index < max && this[length - 1 - index] == other[other.length - 1 - index]) index += 1
+    return index
+}
+
+/**
+ * Chunks of the source after an edit of the [previous] source, only the region from the chunk that contains
+ * the first change to the first chunk after the last change that starts where a previous chunk started is scanned.
+ * The other chunks are the [previousChunks], the ones after the edit moved by its size and lines
+ */
+fun CharSequence.topLevelChunks(previous: CharSequence, previousChunks: List<TopLevelChunk>): List<TopLevelChunk> {
+    if (previousChunks.isEmpty()) return topLevelChunks()
+    val prefix = commonPrefixLength(previous)
+    val suffix = commonSuffixLength(previous, minOf(length, previous.length) - prefix)
+    val lengthDelta = length - previous.length
+    val editEnd = length - suffix
+    // the end of a chunk is decided by the first character of the next chunk, so it must be before the edit
+    val first = previousChunks.indexOfFirst { it.end >= prefix }.let {
+        if (it == -1) previousChunks.size - 1 else it
+    }
+    val resume = previousChunks[first]
+    var next = first + 1
+    val scanner = TopLevelScanner(this, resume.start, resume.line) { start ->
+        if (start < editEnd) false
+        else {
+            while (next < previousChunks.size && previousChunks[next].start + lengthDelta < start) next += 1
+            next < previousChunks.size && previousChunks[next].start + lengthDelta == start
+        }
+    }
+    val scanned = scanner.scan()
+    if (!scanner.stopped) return previousChunks.subList(0, first) + scanned
+    val lineDelta = scanner.chunkLine - previousChunks[next].line
+    return previousChunks.subList(0, first) + scanned + previousChunks.subList(next, previousChunks.size).map {
+        TopLevelChunk(it.start + lengthDelta, it.end + lengthDelta, it.line + lineDelta)
+    }
+}
+
+private fun CharSequence.lexerTopLevelChunk(chunk: TopLevelChunk, withLocations: Boolean) =
+    charStream(chunk.start, chunk.end)
+        .lexerModule(withLocations, chunk.line, chunk.start)
+
+/**
+ * Parse the declarations of a chunk, the locations are the locations in the whole source
+ */
+fun CharSequence.parseTopLevelChunk(chunk: TopLevelChunk): List<NodeData> =
+    lexerTopLevelChunk(chunk, true)
+        .emitLocations(true) {
+            it.consumeModuleNodes()
+        }
+
+/**
+ * Parse the declarations of a chunk with its own lexer state, so chunks can be parsed in parallel
+ */
+internal fun CharSequence.consumeTopLevelChunk(
+    chunk: TopLevelChunk,
+    withLocations: Boolean
+): ParserErrorOrValue<KSharpLexerState, List<NodeData>> =
+    lexerTopLevelChunk(chunk, withLocations)
+        .emitLocations(withLocations) {
+            it.consumeModuleNodesLogic().build { nodes ->
+                nodes.filterIsInstance<NodeData>()
+            }
+        }.map { it.value }
@@ -4,6 +4,8 @@ import org.ksharp.common.Either
 import org.ksharp.common.add
 import org.ksharp.common.cast
 import org.ksharp.common.listBuilder
+import org.ksharp.common.mapChunks
+import org.ksharp.common.unwrap
 import org.ksharp.nodes.ModuleNode
 import org.ksharp.nodes.NodeData
 import org.ksharp.parser.*
@@ -12,10 +14,16 @@ import java.io.Reader
 import java.nio.charset.StandardCharsets
 import java.nio.file.Files
 import java.nio.file.Path
+import java.util.concurrent.ForkJoinPool
 
 typealias KSharpParserResult = ParserResult<NodeData, KSharpLexerState>
 typealias KSharpConsumeResult = ConsumeResult<KSharpLexerState>
 
+/**
+ * Number of top level chunks parsed by a task when a module is parsed in parallel
+ */
+const val ParseChunkSize = 16
+
 private val TypeRegexp = Regex("[a-z][a-zA-Z0-9_]*\\.[a-zA-Z0-9_]+")
 
 fun String.isValidType(): Boolean =
@@ -84,14 +92,17 @@ fun KSharpConsumeResult.thenAssignOperator() =
 
 
 fun String.lexerModule(withLocations: Boolean) =
-    this.reader().lexerModule(withLocations)
+    charStream().lexerModule(withLocations)
 
 fun Reader.lexerModule(withLocations: Boolean) =
+    charStream().lexerModule(withLocations)
+
+fun CharStream.lexerModule(withLocations: Boolean, firstLine: Int = 1, firstLineOffset: Int = 0) =
     kSharpLexer()
         .filterAndCollapseTokens()
         .cast<TokenLexerIterator<KSharpLexerState>>()
         .let {
-            if (withLocations) it.toLogicalLexerToken()
+            if (withLocations) it.toLogicalLexerToken(firstLine, firstLineOffset)
             else it
         }.excludeIgnoreNewLineTokens()
         .collapseNewLines()
@@ -102,6 +113,11 @@ fun Reader.lexerModule(withLocations: Boolean) =
 fun Reader.parseModule(
     name: String,
     withLocations: Boolean
+): ParserErrorOrValue<KSharpLexerState, ModuleNode> = charStream().parseModule(name, withLocations)
+
+fun CharStream.parseModule(
+    name: String,
+    withLocations: Boolean
 ): ParserErrorOrValue<KSharpLexerState, ModuleNode> =
     lexerModule(withLocations)
         .emitLocations(withLocations) {
@@ -110,12 +126,29 @@ fun Reader.parseModule(
         .map { it.value }
 
 fun Path.parseModule(withLocations: Boolean) =
-    Files.newBufferedReader(this, StandardCharsets.UTF_8).parseModule(fileName.toString(), withLocations)
+    Files.readString(this, StandardCharsets.UTF_8).parseModule(fileName.toString(), withLocations)
 
 fun File.parseModule(withLocations: Boolean) =
-    reader(StandardCharsets.UTF_8).parseModule(name, withLocations)
+    readText(StandardCharsets.UTF_8).parseModule(name, withLocations)
+
+fun String.parseModule(name: String, withLocations: Boolean) = charStream().parseModule(name, withLocations)
 
-fun String.parseModule(name: String, withLocations: Boolean) = reader().parseModule(name, withLocations)
+/**
+ * Parse the top level declarations on the pool, the source is split in chunks (see [topLevelChunks])
+ * and each chunk is parsed with its own lexer state. The nodes are merged in source order
+ */
+fun String.parseModule(
+    name: String,
+    withLocations: Boolean,
+    pool: ForkJoinPool
+): ParserErrorOrValue<KSharpLexerState, ModuleNode> {
+    val chunks = topLevelChunks()
+    return pool.mapChunks(chunks.size, ParseChunkSize) {
+        consumeTopLevelChunk(chunks[it], withLocations)
+    }.unwrap().map {
+        it.asSequence().flatten().toModuleNode(name)
+    }
+}
 
 fun String.parseModuleAsNodeSequence(): List<NodeData> =
     lexerModule(true)
@@ -6,7 +6,7 @@ import io.kotest.matchers.shouldBe
 
 class CharStreamTest : StringSpec({
     "Given a CharStream should read a char, get tokens" {
-        "Hello".charStream().let {
+        listOf("Hello".charStream(), "Hello".reader().charStream(), "Hello".toCharArray().charStream()).forEach {
             it.read().shouldBe('H')
             it.read().shouldBe('e')
             it.read().shouldBe('l')
@@ -27,4 +27,30 @@ class CharStreamTest : StringSpec({
             it.token(0).shouldBeNull()
         }
     }
+    "Read a text larger than the reader buffer" {
+        val text = (1..5000).joinToString(" ") { "word$it" }
+        val tokens = { stream: CharStream ->
+            generateSequence {
+                var c = stream.readCode()
+                if (c == ' '.code) stream.token(0)
+                else {
+                    while (c != EndOfStream && c != ' '.code) c = stream.readCode()
+                    stream.token(1)
+                }
+            }.toList()
+        }
+        val fromReader = tokens(text.reader().charStream())
+        fromReader.shouldBe(tokens(text.charStream()))
+        fromReader.size.shouldBe(9999)
+        fromReader.last().shouldBe(TextToken("word5000", text.length - 8, text.length))
+    }
+    "TextToken from a char sequence copies the text when it is read" {
+        "Hello world".charStream().let {
+            repeat(6) { _ -> it.read() }
+            it.token(1).apply {
+                shouldBe(TextToken("Hello", 0, 5))
+                this!!.text.shouldBe("Hello")
+            }
+        }
+    }
 })
@@ -73,4 +73,20 @@ class LexerTokenTest : StringSpec({
         collapsed.startPosition.shouldBe(Line(1) to Offset(0))
         collapsed.endPosition.shouldBe(Line(4) to Offset(0))
     }
+    "Collapse tokens sliced from the same source" {
+        val stream = "Hello world".charStream()
+        val tokens = listOf(5, 6).map { size ->
+            repeat(size) { stream.read() }
+            LexerToken(BaseTokenType.Unknown, stream.token(0)!!)
+        }
+        val collapsed = tokens[0].collapse(KSharpTokenType.FunctionName, tokens[1]) as LexerToken
+        collapsed.type.shouldBe(KSharpTokenType.FunctionName)
+        collapsed.textSequence.length.shouldBe(11)
+        collapsed.textSequence[6].shouldBe('w')
+        collapsed.text.shouldBe("Hello world")
+        collapsed.startOffset.shouldBe(0)
+        collapsed.endOffset.shouldBe(11)
+        tokens[0].collapse(KSharpTokenType.FunctionName, LexerToken(BaseTokenType.Unknown, TextToken("!", 11, 12)))
+            .text.shouldBe("Hello!")
+    }
 })
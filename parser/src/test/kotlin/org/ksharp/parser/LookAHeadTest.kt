@@ -217,4 +217,45 @@ class LookAHeadTest : StringSpec({
                 )
             )
     }
+    "LookAhead buffer grows and rewinds a long checkpoint" {
+        val counter = AtomicInteger(0)
+        val fallback = { LexerToken(BaseTokenType.Unknown, TextToken(counter.incrementAndGet().toString(), 0, 0)) }
+        LookAheadCheckpoints().apply {
+            repeat(5) { next(fallback) }
+            addCheckpoint()
+            repeat(100) { next(fallback) }
+            addCheckpoint()
+            repeat(50) { next(fallback) }
+            removeCheckPoint(PreserveTokens)
+            next(fallback).shouldBe(LexerToken(BaseTokenType.Unknown, TextToken("106", 0, 0)))
+            removeCheckPoint(PreserveTokens)
+            (1..150).map { next(fallback)!!.text }.shouldBe((6..155).map { it.toString() })
+            next(fallback).shouldBe(LexerToken(BaseTokenType.Unknown, TextToken("156", 0, 0)))
+            checkpoints.shouldBe(0)
+            stats.snapshot().shouldBe(
+                LookAheadCounters(
+                    checkpoints = 2,
+                    backtracks = 2,
+                    rewoundTokens = 50 + 101,
+                    rereadTokens = 1 + 150,
+                    maxDepth = 2
+                )
+            )
+        }
+    }
+    "LookAhead counters of a rule" {
+        val counter = AtomicInteger(0)
+        val lexer = generateLexerIterator(LexerState("")) {
+            LexerToken(BaseTokenType.Unknown, TextToken(counter.incrementAndGet().toString(), 0, 0))
+        }.enableLookAhead()
+        val stats = lexer.state.lookAHeadState.stats
+        val before = stats.snapshot()
+        lexer.lookAHead {
+            it.consume(3)
+            LookAHeadError.Error1.new().asLookAHeadResult()
+        }
+        (stats.snapshot() - before).shouldBe(
+            LookAheadCounters(checkpoints = 1, backtracks = 1, rewoundTokens = 3, maxDepth = 1)
+        )
+    }
 })
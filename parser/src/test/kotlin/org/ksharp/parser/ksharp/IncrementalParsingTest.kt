@@ -0,0 +1,71 @@
+package org.ksharp.parser.ksharp
+
+import io.kotest.core.spec.style.StringSpec
+import io.kotest.matchers.shouldBe
+
+private val source = """
+    |import math as m
+    |
+    |type Age = Int
+    |
+    |@native("sum")
+    |sum a b = a + b
+    |
+    |text = ""${'"'}
+    |first line
+    |second line""${'"'}
+    |
+    |double a =
+    |   a * 2
+""".trimMargin()
+
+class IncrementalParsingTest : StringSpec({
+    "Split a module in top level chunks" {
+        source.topLevelChunks()
+            .map { source.substring(it.start, it.end).lines().first() to it.line }
+            .shouldBe(
+                listOf(
+                    "import math as m" to 1,
+                    "type Age = Int" to 3,
+                    "@native(\"sum\")" to 5,
+                    "text = \"\"\"" to 8,
+                    "double a =" to 12
+                )
+            )
+    }
+    "Parse the chunks as the whole module" {
+        source.topLevelChunks()
+            .flatMap { source.parseTopLevelChunk(it) }
+            .shouldBe(source.parseModuleAsNodeSequence())
+    }
+    "Parse again only the changed chunks" {
+        val parser = IncrementalModuleParser()
+        parser.parse(source).shouldBe(source.parseModuleAsNodeSequence())
+        parser.parsedChunks.shouldBe(5)
+        val changed = source.replace("a + b", "a + b + 1")
+        parser.parse(changed).shouldBe(changed.parseModuleAsNodeSequence())
+        parser.parsedChunks.shouldBe(1)
+        val newLine = changed.replace("type Age = Int", "type Age =\n   Int")
+        parser.parse(newLine).shouldBe(newLine.parseModuleAsNodeSequence())
+        parser.parsedChunks.shouldBe(1)
+        parser.parse(newLine).shouldBe(newLine.parseModuleAsNodeSequence())
+        parser.parsedChunks.shouldBe(0)
+        val removedLines = newLine.replace("text = \"\"\"\nfirst line\n", "text = \"\"\"")
+        parser.parse(removedLines).shouldBe(removedLines.parseModuleAsNodeSequence())
+        parser.parsedChunks.shouldBe(1)
+    }
+    "Find the chunks again only around the edit" {
+        listOf(
+            source.replace("a + b", "a + b + 1"),
+            source.replace("type Age = Int", "type Age =\n   Int"),
+            source.replace("type Age = Int\n", ""),
+            source.replace("sum a b", "sum a b =\n  a\n\nsub a b"),
+            source.replace("text = \"\"\"", "text = \"\"\"\"\"\"\ndouble a = \"\"\""),
+            "\n$source",
+            "$source\n\nlast = 10"
+        ).forEach { changed ->
+            changed.topLevelChunks(source, source.topLevelChunks())
+                .shouldBe(changed.topLevelChunks())
+        }
+    }
+})
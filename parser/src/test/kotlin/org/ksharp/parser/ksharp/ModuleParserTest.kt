@@ -1,12 +1,15 @@
 package org.ksharp.parser.ksharp
 
 import io.kotest.core.spec.style.StringSpec
+import io.kotest.matchers.collections.shouldNotBeEmpty
+import io.kotest.matchers.shouldBe
 import org.ksharp.common.Line
 import org.ksharp.common.Location
 import org.ksharp.common.Offset
 import org.ksharp.nodes.*
 import org.ksharp.test.shouldBeRight
 import java.nio.file.Paths
+import java.util.concurrent.ForkJoinPool
 
 class ModuleParserTest : StringSpec({
     val expectedModule = ModuleNode(
@@ -768,4 +771,41 @@ class ModuleParserTest : StringSpec({
                 )
             )
     }
+    "Parse a module in parallel" {
+        val source = buildString {
+            appendLine("import math as m")
+            appendLine("type Age = Int")
+            (1..100).forEach {
+                appendLine("@native(\"f$it\")")
+                appendLine("f$it a =")
+                appendLine("   a + $it")
+            }
+        }
+        val pool = ForkJoinPool(4)
+        try {
+            listOf(true, false).forEach { withLocations ->
+                source.parseModule("File", withLocations, pool)
+                    .shouldBe(source.parseModule("File", withLocations))
+            }
+        } finally {
+            pool.shutdown()
+        }
+    }
+    "Parse a module with syntax errors in parallel" {
+        val source = buildString {
+            appendLine("import math as m")
+            (1..50).forEach {
+                appendLine("f$it a = a + $it")
+                if (it % 10 == 0) appendLine("1 +")
+            }
+        }
+        listOf(true, false).forEach { withLocations ->
+            val errors = source.parseModule("File", withLocations)
+                .shouldBeRight().value.errors
+            errors.shouldNotBeEmpty()
+            source.parseModule("File", withLocations, ForkJoinPool.commonPool())
+                .shouldBeRight().value.errors
+                .shouldBe(errors)
+        }
+    }
 })
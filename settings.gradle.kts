@@ -28,15 +28,18 @@ dependencyResolutionManagement {
             version("graalvm", "22.3.4")
             version("netty", "4.1.106.Final")
             version("reflections", "0.10.2")
+            version("jmh", "1.37")
 
             // Tooling
             version("plugin.com.github.johnrengelman.shadow", "8.1.1")
             version("plugin.org.jetbrains.kotlinx.kover", "0.7.5")
             version("plugin.org.graalvm.buildtools.native", "0.10.0")
+            version("plugin.me.champeau.jmh", "0.7.2")
 
             // Plugins
             plugin("shadow", "com.github.johnrengelman.shadow").versionRef("plugin.com.github.johnrengelman.shadow")
             plugin("graalvm", "org.graalvm.buildtools.native").versionRef("plugin.org.graalvm.buildtools.native")
+            plugin("jmh", "me.champeau.jmh").versionRef("plugin.me.champeau.jmh")
 
             // Libraries
             library(
@@ -51,6 +54,7 @@ dependencyResolutionManagement {
                 "org.eclipse.lsp4j",
                 "org.eclipse.lsp4j.jsonrpc"
             ).versionRef("eclipse.lsp4j")
+            library("graalvm.sdk", "org.graalvm.sdk", "graal-sdk").versionRef("graalvm")
             library("graalvm.truffle.api", "org.graalvm.truffle", "truffle-api").versionRef("graalvm")
             library(
                 "graalvm.truffle.dsl-processor",
@@ -75,3 +79,4 @@ include("lsp")
 include("ir")
 include("docs")
 include("kore")
+include("benchmarks")
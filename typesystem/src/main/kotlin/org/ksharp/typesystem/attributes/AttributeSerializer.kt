@@ -42,23 +42,17 @@ val CommonAttributeSerializerWriter =
     }
 
 val NameAttributeSerializerWriter = SerializerWriter<AttributeWithValue<Map<String, String>>> { input, buffer, table ->
-    newBufferWriter().apply {
-        add(0)
-        add(AttributeSerializerReader.Name.ordinal) //4
-        input.value.writeTo(this, table)
-        set(0, size)
-        transferTo(buffer)
+    buffer.sized {
+        it.add(AttributeSerializerReader.Name.ordinal) //4
+        input.value.writeTo(it, table)
     }
 }
 
 val TargetLanguageAttributeSerializerWriter =
     SerializerWriter<AttributeWithValue<Set<String>>> { input, buffer, table ->
-        newBufferWriter().apply {
-            add(0)
-            add(AttributeSerializerReader.TargetLanguage.ordinal) //4
-            input.value.writeTo(this, table)
-            set(0, size)
-            transferTo(buffer)
+        buffer.sized {
+            it.add(AttributeSerializerReader.TargetLanguage.ordinal) //4
+            input.value.writeTo(it, table)
         }
     }
 
@@ -62,19 +62,12 @@ internal fun Attribute.writeTo(buffer: BufferWriter, table: BinaryTable) {
 }
 
 fun Set<Attribute>.writeTo(buffer: BufferWriter, table: BinaryTable) {
-    newBufferWriter().apply {
-        if (isEmpty()) {
-            add(0)
-            set(0, size)
-            transferTo(buffer)
-        } else {
-            add(0)
-            add(this@writeTo.size)
+    buffer.sized { block ->
+        if (isNotEmpty()) {
+            block.add(size)
             forEach {
-                it.writeTo(this, table)
+                it.writeTo(block, table)
             }
-            set(0, size)
-            transferTo(buffer)
         }
     }
 }
@@ -60,13 +60,10 @@ enum class TypeSerializers(
 fun Type.writeTo(buffer: BufferWriter, table: BinaryTable) {
     val serializer = this.serializer
     val writer = serializer.writer as SerializerWriter<Type>
-    newBufferWriter().apply {
-        add(0)
-        add(table.add(serializer.catalog))
-        add(serializer.ordinal)
-        writer.write(this@writeTo, this, table)
-        set(0, size)
-        transferTo(buffer)
+    buffer.sized {
+        it.add(table.add(serializer.catalog))
+        it.add(serializer.ordinal)
+        writer.write(this, it, table)
     }
 }
 